@@ -0,0 +1,50 @@
+package dev.vertcode.vcore.benchmarks;
+
+import dev.vertcode.vcore.storage.StorageObject;
+import dev.vertcode.vcore.storage.annotation.StorageContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link StorageObject} shaped like a typical player profile, with scalars, a list, a map and a timestamp.
+ * <p>
+ * The Gson instance of the storage module serializes static fields too, so the test data is generated by
+ * {@link BenchmarkProfiles} instead.
+ */
+@StorageContext(collectionName = "benchmark_profiles", identifierField = "uuid")
+public class BenchmarkProfile extends StorageObject<UUID> {
+
+    private UUID uuid;
+    private String name;
+    private int level;
+    private long balance;
+    private boolean premium;
+    private Instant lastSeen;
+    private List<String> friends;
+    private Map<String, Integer> stats;
+
+    public BenchmarkProfile() {
+    }
+
+    public BenchmarkProfile(UUID uuid, String name, int level, long balance, boolean premium, Instant lastSeen,
+                            List<String> friends, Map<String, Integer> stats) {
+        this.uuid = uuid;
+        this.name = name;
+        this.level = level;
+        this.balance = balance;
+        this.premium = premium;
+        this.lastSeen = lastSeen;
+        this.friends = friends;
+        this.stats = stats;
+    }
+
+    @Override
+    public @NotNull UUID getIdentifier() {
+        return this.uuid;
+    }
+
+}
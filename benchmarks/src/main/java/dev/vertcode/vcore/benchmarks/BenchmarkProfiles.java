@@ -0,0 +1,71 @@
+package dev.vertcode.vcore.benchmarks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates the {@link BenchmarkProfile}s the benchmarks work on.
+ */
+public final class BenchmarkProfiles {
+
+    /**
+     * The seed all benchmark data is generated from, so every run works on the same data.
+     */
+    public static final long SEED = 0x5EEDL;
+
+    private static final String[] STATS = {"kills", "deaths", "wins", "losses", "blocks_placed", "blocks_broken"};
+
+    private BenchmarkProfiles() {
+    }
+
+    /**
+     * Create a profile with random values.
+     *
+     * @param random  The {@link Random} the values are taken from
+     * @param friends The amount of friends of the profile
+     * @return The profile
+     */
+    public static BenchmarkProfile create(Random random, int friends) {
+        UUID uuid = new UUID(random.nextLong(), random.nextLong());
+        String name = "player_" + Integer.toHexString(random.nextInt());
+        int level = random.nextInt(100);
+        long balance = random.nextInt(1_000_000);
+        boolean premium = random.nextBoolean();
+        Instant lastSeen = Instant.ofEpochSecond(1_700_000_000L + random.nextInt(10_000_000));
+
+        List<String> friendList = new ArrayList<>(friends);
+        for (int i = 0; i < friends; i++) {
+            friendList.add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        for (String stat : STATS) {
+            stats.put(stat, random.nextInt(10_000));
+        }
+
+        return new BenchmarkProfile(uuid, name, level, balance, premium, lastSeen, friendList, stats);
+    }
+
+    /**
+     * Create profiles with random values.
+     *
+     * @param count   The amount of profiles
+     * @param friends The amount of friends of every profile
+     * @return The profiles
+     */
+    public static BenchmarkProfile[] create(int count, int friends) {
+        Random random = new Random(SEED);
+        BenchmarkProfile[] profiles = new BenchmarkProfile[count];
+        for (int i = 0; i < count; i++) {
+            profiles[i] = create(random, friends);
+        }
+
+        return profiles;
+    }
+
+}
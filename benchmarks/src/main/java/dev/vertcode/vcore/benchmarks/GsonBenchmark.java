@@ -0,0 +1,56 @@
+package dev.vertcode.vcore.benchmarks;
+
+import com.google.gson.Gson;
+import dev.vertcode.vcore.storage.util.StorageUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks serializing and deserializing a {@link BenchmarkProfile} with the Gson instance of {@link StorageUtil}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djmh.shutdownTimeout=0"})
+@State(Scope.Benchmark)
+public class GsonBenchmark {
+
+    @Param({"0", "100"})
+    public int friends;
+
+    private Gson gson;
+    private BenchmarkProfile profile;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.gson = StorageUtil.getGson();
+        this.profile = BenchmarkProfiles.create(new Random(BenchmarkProfiles.SEED), this.friends);
+        this.json = this.gson.toJson(this.profile);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return this.gson.toJson(this.profile);
+    }
+
+    @Benchmark
+    public BenchmarkProfile deserialize() {
+        return this.gson.fromJson(this.json, BenchmarkProfile.class);
+    }
+
+}
@@ -0,0 +1,98 @@
+package dev.vertcode.vcore.benchmarks;
+
+import dev.vertcode.vcore.storage.service.JSONStorageService;
+import dev.vertcode.vcore.storage.service.SyncMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks the I/O of a {@link JSONStorageService} on a temporary directory.
+ * <p>
+ * The numbers depend on the file system, so only compare runs from the same machine and disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djmh.shutdownTimeout=0"})
+@State(Scope.Benchmark)
+public class JSONStorageServiceBenchmark {
+
+    @Param({"100", "1000"})
+    public int count;
+
+    @Param({"NONE", "BATCH"})
+    public SyncMode syncMode;
+
+    private Path dataFolder;
+    private JSONStorageService<UUID, BenchmarkProfile> service;
+    private BenchmarkProfile[] profiles;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.dataFolder = Files.createTempDirectory("vcore-benchmark");
+        this.service = new JSONStorageService<>(BenchmarkProfile.class, this.dataFolder.toFile());
+        this.service.setAutoSave(false);
+        this.service.setSyncMode(this.syncMode);
+        this.service.startup();
+
+        this.profiles = BenchmarkProfiles.create(this.count, 10);
+        this.service.saveAll(List.of(this.profiles));
+        for (BenchmarkProfile profile : this.profiles) {
+            this.service.addToCache(profile);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.service.shutdown();
+
+        try (Stream<Path> files = Files.walk(this.dataFolder)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void save(RandomCursor cursor) {
+        this.service.save(this.profiles[cursor.next(this.count)]);
+    }
+
+    @Benchmark
+    public BenchmarkProfile getCached(RandomCursor cursor) {
+        return this.service.get(this.profiles[cursor.next(this.count)].getIdentifier());
+    }
+
+    @Benchmark
+    public BenchmarkProfile getUncached(RandomCursor cursor) {
+        return this.service.get(this.profiles[cursor.next(this.count)].getIdentifier(), false);
+    }
+
+    @Benchmark
+    public Collection<BenchmarkProfile> getAll() {
+        return this.service.getAll(false);
+    }
+
+}
@@ -0,0 +1,95 @@
+package dev.vertcode.vcore.benchmarks;
+
+import com.mongodb.ConnectionString;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import dev.vertcode.vcore.storage.service.MongoStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a {@link MongoStorageService} against an in-memory MongoDB stand-in on the loopback interface.
+ * <p>
+ * The stand-in keeps the numbers independent of a real server, so they show the cost of the service, the
+ * driver and the (de)serialization rather than the cost of the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djmh.shutdownTimeout=0"})
+@State(Scope.Benchmark)
+public class MongoStorageServiceBenchmark {
+
+    @Param({"100", "1000"})
+    public int count;
+
+    @Param({"false", "true"})
+    public boolean bsonMapping;
+
+    private MongoServer server;
+    private MongoStorageService<UUID, BenchmarkProfile> service;
+    private BenchmarkProfile[] profiles;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.server = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = this.server.bind();
+
+        ConnectionString connectionString = new ConnectionString("mongodb://" + address.getHostString() + ":" + address.getPort() + "/benchmarks");
+        this.service = new MongoStorageService<>(BenchmarkProfile.class, connectionString);
+        this.service.setAutoSave(false);
+        this.service.setBsonMapping(this.bsonMapping);
+        this.service.startup();
+
+        this.profiles = BenchmarkProfiles.create(this.count, 10);
+        this.service.saveAll(List.of(this.profiles));
+        for (BenchmarkProfile profile : this.profiles) {
+            this.service.addToCache(profile);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.service.shutdown();
+        this.server.shutdownNow();
+    }
+
+    @Benchmark
+    public void save(RandomCursor cursor) {
+        this.service.save(this.profiles[cursor.next(this.count)]);
+    }
+
+    @Benchmark
+    public BenchmarkProfile getCached(RandomCursor cursor) {
+        return this.service.get(this.profiles[cursor.next(this.count)].getIdentifier());
+    }
+
+    @Benchmark
+    public BenchmarkProfile getUncached(RandomCursor cursor) {
+        return this.service.get(this.profiles[cursor.next(this.count)].getIdentifier(), false);
+    }
+
+    @Benchmark
+    public Collection<BenchmarkProfile> getAll() {
+        return this.service.getAll(false);
+    }
+
+}
@@ -0,0 +1,31 @@
+package dev.vertcode.vcore.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Picks the next element a benchmark works on, in a random but reproducible order.
+ * <p>
+ * Every thread gets its own cursor, seeded with {@link BenchmarkProfiles#SEED}, so runs access the same
+ * elements in the same order without sharing state between threads.
+ */
+@State(Scope.Thread)
+public class RandomCursor {
+
+    private long state = BenchmarkProfiles.SEED;
+
+    /**
+     * Get the next index.
+     *
+     * @param bound The amount of elements
+     * @return An index between 0, inclusive, and the bound, exclusive
+     */
+    public int next(int bound) {
+        // xorshift64, cheap enough to not show up in the measurements
+        this.state ^= this.state << 13;
+        this.state ^= this.state >>> 7;
+        this.state ^= this.state << 17;
+        return (int) ((this.state >>> 1) % bound);
+    }
+
+}
@@ -0,0 +1,116 @@
+package dev.vertcode.vcore.benchmarks;
+
+import dev.vertcode.vcore.storage.cache.ServiceCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the lookups, adds and cleanups of a {@link ServiceCache}, unbounded and bounded by its size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djmh.shutdownTimeout=0"})
+@State(Scope.Benchmark)
+public class ServiceCacheBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean bounded;
+
+    private ServiceCache<UUID, BenchmarkProfile> cache;
+    private BenchmarkProfile[] profiles;
+    private UUID[] identifiers;
+    private UUID[] missingIdentifiers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // The values never expire here, otherwise every add would grow the expiry queue until the next clean
+        this.cache = new ServiceCache<>();
+        if (this.bounded) {
+            this.cache.setMaximumSize(this.size);
+        }
+
+        this.profiles = BenchmarkProfiles.create(this.size, 0);
+        this.identifiers = new UUID[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.cache.add(this.profiles[i]);
+            this.identifiers[i] = this.profiles[i].getIdentifier();
+        }
+
+        this.missingIdentifiers = new UUID[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.missingIdentifiers[i] = new UUID(BenchmarkProfiles.SEED, i);
+        }
+    }
+
+    @Benchmark
+    public BenchmarkProfile getHit(RandomCursor cursor) {
+        return this.cache.getCachedValue(this.identifiers[cursor.next(this.size)]);
+    }
+
+    @Benchmark
+    public BenchmarkProfile getMiss(RandomCursor cursor) {
+        return this.cache.getCachedValue(this.missingIdentifiers[cursor.next(this.size)]);
+    }
+
+    @Benchmark
+    public void add(RandomCursor cursor) {
+        this.cache.add(this.profiles[cursor.next(this.size)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 20, batchSize = 1)
+    @Measurement(iterations = 50, batchSize = 1)
+    public void clean(ExpiredCache expiredCache) {
+        expiredCache.cache.clean();
+    }
+
+    /**
+     * A cache that is filled with values that already expired before every iteration, an iteration is a single
+     * clean that removes all of them.
+     */
+    @State(Scope.Thread)
+    public static class ExpiredCache {
+
+        private ServiceCache<UUID, BenchmarkProfile> cache;
+        private BenchmarkProfile[] profiles;
+
+        @Setup(Level.Trial)
+        public void setup(ServiceCacheBenchmark benchmark) {
+            this.cache = new ServiceCache<>(0L, TimeUnit.NANOSECONDS);
+            if (benchmark.bounded) {
+                this.cache.setMaximumSize(benchmark.size);
+            }
+
+            this.profiles = benchmark.profiles;
+        }
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            for (BenchmarkProfile profile : this.profiles) {
+                this.cache.add(profile);
+            }
+        }
+
+    }
+
+}
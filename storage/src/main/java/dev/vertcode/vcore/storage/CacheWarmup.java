@@ -0,0 +1,165 @@
+package dev.vertcode.vcore.storage;
+
+import dev.vertcode.vcore.storage.query.Query;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Describes which {@link StorageObject}s are loaded into the cache when a {@link StorageService} starts.
+ * <p>
+ * The warm-up runs in the background, so the service serves requests right away and loads the values that
+ * aren't warm yet on demand. Values that are already cached when the warm-up reaches them are kept.
+ * <pre>{@code
+ * service.setWarmup(CacheWarmup.<UUID>identifiers(onlinePlayers)
+ *         .parallelism(4)
+ *         .rateLimit(500)
+ *         .onProgress((loaded, total) -> logger.info("Warmed " + loaded + "/" + total)));
+ * service.startup();
+ * }</pre>
+ *
+ * @param <I> The identifier type
+ */
+public class CacheWarmup<I> {
+
+    private final @Nullable Query query;
+    private final @Nullable List<I> identifiers;
+    private int parallelism = 1;
+    private int rateLimit = 0;
+    private int batchSize = 100;
+    private @Nullable WarmupListener listener;
+
+    private CacheWarmup(@Nullable Query query, @Nullable List<I> identifiers) {
+        this.query = query;
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * Warm up the cache with all values.
+     *
+     * @param <I> The identifier type
+     * @return The warm-up
+     */
+    public static <I> CacheWarmup<I> all() {
+        return new CacheWarmup<>(null, null);
+    }
+
+    /**
+     * Warm up the cache with the values that match a {@link Query}.
+     *
+     * @param query The query
+     * @param <I>   The identifier type
+     * @return The warm-up
+     */
+    public static <I> CacheWarmup<I> query(Query query) {
+        return new CacheWarmup<>(query, null);
+    }
+
+    /**
+     * Warm up the cache with the values of some identifiers.
+     *
+     * @param identifiers The identifiers
+     * @param <I>         The identifier type
+     * @return The warm-up
+     */
+    public static <I> CacheWarmup<I> identifiers(Collection<I> identifiers) {
+        return new CacheWarmup<>(null, new ArrayList<>(identifiers));
+    }
+
+    /**
+     * Set the amount of batches that are loaded at once, defaults to 1.
+     * <p>
+     * A warm-up of all values or of a query reads the identifiers from a single cursor on one more thread,
+     * which hands the batches to the loading threads.
+     *
+     * @param parallelism The amount of batches loaded at once
+     * @return This warm-up
+     */
+    public CacheWarmup<I> parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1.");
+        }
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Limit how many values are loaded per second, so the database isn't flooded while it serves requests.
+     *
+     * @param rateLimit The maximum amount of values per second, or 0 for no limit
+     * @return This warm-up
+     */
+    public CacheWarmup<I> rateLimit(int rateLimit) {
+        if (rateLimit < 0) {
+            throw new IllegalArgumentException("The rate limit must be at least 0.");
+        }
+
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    /**
+     * Set the amount of values that are loaded together, defaults to 100.
+     *
+     * @param batchSize The amount of values per batch
+     * @return This warm-up
+     */
+    public CacheWarmup<I> batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1.");
+        }
+
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the {@link WarmupListener} that receives the progress.
+     *
+     * @param listener The listener
+     * @return This warm-up
+     */
+    public CacheWarmup<I> onProgress(@Nullable WarmupListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public @Nullable Query getQuery() {
+        return this.query;
+    }
+
+    public @Nullable List<I> getIdentifiers() {
+        return this.identifiers;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    public int getRateLimit() {
+        return this.rateLimit;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public @Nullable WarmupListener getListener() {
+        return this.listener;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheWarmup{" +
+                "query=" + query +
+                ", identifiers=" + (identifiers == null ? null : identifiers.size()) +
+                ", parallelism=" + parallelism +
+                ", rateLimit=" + rateLimit +
+                ", batchSize=" + batchSize +
+                '}';
+    }
+
+}
@@ -0,0 +1,270 @@
+package dev.vertcode.vcore.storage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A running {@link CacheWarmup} of a {@link StorageService}.
+ * <p>
+ * The warm-up runs on its own threads, so it doesn't hold up the scheduler the service uses for its other
+ * work. The threads are stopped once the warm-up is done.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+final class CacheWarmupTask<I, V extends StorageObject<I>> {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    // How long the reader and the workers wait for each other before checking if the warm-up was cancelled
+    private static final long HAND_OVER_TIMEOUT_MILLIS = 100L;
+
+    private final StorageService<I, V> service;
+    private final CacheWarmup<I> warmup;
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+    private final AtomicLong loaded = new AtomicLong();
+    private final Object rateLock = new Object();
+
+    private long nextPermitNanos = System.nanoTime();
+    private volatile boolean cancelled = false;
+    private ExecutorService executor;
+
+    CacheWarmupTask(StorageService<I, V> service, CacheWarmup<I> warmup) {
+        this.service = service;
+        this.warmup = warmup;
+    }
+
+    /**
+     * Start the warm-up.
+     *
+     * @return A {@link CompletableFuture} completed with the amount of processed values once the warm-up is done
+     */
+    CompletableFuture<Long> start() {
+        List<I> identifiers = this.warmup.getIdentifiers();
+        int parallelism = this.warmup.getParallelism();
+        // A warm-up without identifiers needs one more thread that reads the cursor
+        int threads = identifiers == null ? parallelism + 1 : parallelism;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "vcore-warmup-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[threads];
+        if (identifiers == null) {
+            // The cursor is read by a single thread, which hands its batches to the workers
+            BlockingQueue<List<I>> batches = new ArrayBlockingQueue<>(parallelism);
+            workers[parallelism] = CompletableFuture.runAsync(() -> readBatches(batches, parallelism), this.executor);
+            for (int i = 0; i < parallelism; i++) {
+                workers[i] = CompletableFuture.runAsync(() -> loadReadBatches(batches), this.executor);
+            }
+        } else {
+            // Every worker takes the next batch until none are left
+            Queue<List<I>> batches = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < identifiers.size(); i += this.warmup.getBatchSize()) {
+                batches.add(identifiers.subList(i, Math.min(i + this.warmup.getBatchSize(), identifiers.size())));
+            }
+
+            for (int i = 0; i < threads; i++) {
+                workers[i] = CompletableFuture.runAsync(() -> loadBatches(batches, identifiers.size()), this.executor);
+            }
+        }
+
+        CompletableFuture<Void> work = CompletableFuture.allOf(workers);
+
+        work.whenComplete((ignored, ex) -> {
+            this.executor.shutdown();
+            if (ex != null) {
+                this.future.completeExceptionally(ex);
+            } else {
+                this.future.complete(this.loaded.get());
+            }
+        });
+
+        return this.future;
+    }
+
+    /**
+     * Stop the warm-up, the batches that are being loaded are finished first.
+     */
+    void cancel() {
+        this.cancelled = true;
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    CompletableFuture<Long> getFuture() {
+        return this.future;
+    }
+
+    /**
+     * Load batches of identifiers until none are left.
+     *
+     * @param batches The batches
+     * @param total   The amount of identifiers
+     */
+    private void loadBatches(Queue<List<I>> batches, long total) {
+        List<I> batch;
+        while (!this.cancelled && (batch = batches.poll()) != null) {
+            if (!acquire(batch.size())) {
+                return;
+            }
+
+            // Cached values are kept, the rest is loaded in a single round trip
+            this.service.getMany(batch, true);
+            reportProgress(this.loaded.addAndGet(batch.size()), total);
+        }
+    }
+
+    /**
+     * Read the identifiers of all values, or of the values that match the query, and hand them to the workers
+     * in batches. An empty batch tells a worker that nothing is left.
+     *
+     * @param batches The queue the workers take the batches from
+     * @param workers The amount of workers
+     */
+    private void readBatches(BlockingQueue<List<I>> batches, int workers) {
+        try (Stream<I> identifiers = this.service.streamIdentifiers(this.warmup.getQuery())) {
+            Iterator<I> iterator = identifiers.iterator();
+            while (!this.cancelled) {
+                // Wait before taking the next batch, the cursor only fetches more identifiers when they're consumed
+                if (!acquire(this.warmup.getBatchSize())) {
+                    return;
+                }
+
+                List<I> batch = new ArrayList<>(this.warmup.getBatchSize());
+                while (batch.size() < this.warmup.getBatchSize() && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+
+                // The queue is bounded, so the cursor isn't read further ahead than the workers load
+                if (batch.isEmpty() || !hand(batches, batch)) {
+                    return;
+                }
+            }
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                if (!hand(batches, List.of())) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the batches the reader hands over, and cache the values that aren't cached yet.
+     *
+     * @param batches The queue the reader puts the batches in
+     */
+    private void loadReadBatches(BlockingQueue<List<I>> batches) {
+        try {
+            while (!this.cancelled) {
+                List<I> batch = batches.poll(HAND_OVER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    continue;
+                }
+
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                // The values are read when they're cached, so writes since the cursor passed them aren't undone
+                this.service.getMany(batch, true);
+                reportProgress(this.loaded.addAndGet(batch.size()), -1L);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            // Stop the reader and the other workers, the warm-up fails with this exception
+            this.cancelled = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * Hand a batch to the workers, waiting while they're busy.
+     *
+     * @param batches The queue the workers take the batches from
+     * @param batch   The batch
+     * @return If the batch was handed over, false if the warm-up was cancelled
+     */
+    private boolean hand(BlockingQueue<List<I>> batches, List<I> batch) {
+        try {
+            while (!this.cancelled) {
+                if (batches.offer(batch, HAND_OVER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+    /**
+     * Wait until the rate limit allows loading more values.
+     *
+     * @param permits The amount of values
+     * @return If the warm-up should continue, false if it was cancelled while waiting
+     */
+    private boolean acquire(int permits) {
+        int rateLimit = this.warmup.getRateLimit();
+        if (rateLimit == 0) {
+            return true;
+        }
+
+        long waitNanos;
+        synchronized (this.rateLock) {
+            long now = System.nanoTime();
+            long start = this.nextPermitNanos - now > 0L ? this.nextPermitNanos : now;
+
+            waitNanos = start - now;
+            this.nextPermitNanos = start + permits * TimeUnit.SECONDS.toNanos(1L) / rateLimit;
+        }
+
+        if (waitNanos <= 0L) {
+            return true;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            return !this.cancelled;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Tell the {@link WarmupListener} about the progress.
+     *
+     * @param loaded The amount of values that were processed
+     * @param total  The amount of values, or -1 if it isn't known
+     */
+    private void reportProgress(long loaded, long total) {
+        WarmupListener listener = this.warmup.getListener();
+        if (listener == null) {
+            return;
+        }
+
+        try {
+            listener.onProgress(loaded, total);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package dev.vertcode.vcore.storage;
+
+/**
+ * Decides which cached {@link StorageObject}s are written when the {@link StorageService} saves all values.
+ */
+public enum DirtyTracking {
+
+    /**
+     * Every cached value is written.
+     */
+    NONE,
+    /**
+     * Values that are marked dirty, or whose serialized form changed since they were last saved, are written.
+     */
+    HASH,
+    /**
+     * Only values that are marked dirty with {@link StorageObject#markDirty()} are written.
+     */
+    EXPLICIT
+
+}
@@ -4,6 +4,9 @@ import org.jetbrains.annotations.NotNull;
 
 public abstract class StorageObject<T> {
 
+    private transient volatile boolean dirty;
+    private transient volatile long savedHash;
+
     /**
      * Get the identifier of the object.
      *
@@ -11,4 +14,49 @@ public abstract class StorageObject<T> {
      */
     public abstract @NotNull T getIdentifier();
 
+    /**
+     * Mark the object as changed, so it's written on the next save of the {@link StorageService}.
+     */
+    public synchronized void markDirty() {
+        this.dirty = true;
+    }
+
+    /**
+     * Check if the object has been marked as changed since it was last saved.
+     *
+     * @return if the object is dirty
+     */
+    public boolean isDirty() {
+        return this.dirty;
+    }
+
+    /**
+     * Clear the dirty flag of the object.
+     *
+     * @return if the object was dirty
+     */
+    synchronized boolean clearDirty() {
+        boolean dirty = this.dirty;
+        this.dirty = false;
+        return dirty;
+    }
+
+    /**
+     * Get the hash of the serialized object when it was last saved.
+     *
+     * @return the hash, or 0 if the object hasn't been saved yet
+     */
+    long getSavedHash() {
+        return this.savedHash;
+    }
+
+    /**
+     * Set the hash of the serialized object when it was last saved.
+     *
+     * @param savedHash the hash
+     */
+    void setSavedHash(long savedHash) {
+        this.savedHash = savedHash;
+    }
+
 }
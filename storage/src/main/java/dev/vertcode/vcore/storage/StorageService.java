@@ -3,23 +3,62 @@ package dev.vertcode.vcore.storage;
 import dev.vertcode.vcore.scheduler.Schedulers;
 import dev.vertcode.vcore.scheduler.schedule.ScheduledTask;
 import dev.vertcode.vcore.storage.annotation.StorageContext;
+import dev.vertcode.vcore.storage.cache.RemovalCause;
 import dev.vertcode.vcore.storage.cache.ServiceCache;
+import dev.vertcode.vcore.storage.cache.SpillCache;
+import dev.vertcode.vcore.storage.codec.GsonStorageCodec;
+import dev.vertcode.vcore.storage.codec.StorageCodec;
+import dev.vertcode.vcore.storage.invalidation.InvalidationChannel;
+import dev.vertcode.vcore.storage.invalidation.InvalidationListener;
+import dev.vertcode.vcore.storage.metrics.Operation;
+import dev.vertcode.vcore.storage.metrics.StorageMetrics;
+import dev.vertcode.vcore.storage.query.Query;
+import dev.vertcode.vcore.storage.util.StorageUtil;
+import dev.vertcode.vcore.storage.write.WriteBehindQueue;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.Type;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public abstract class StorageService<I, V extends StorageObject<I>> {
 
     protected final Class<V> storageObjectClass;
     protected final ServiceCache<I, V> cache;
+    private final StorageMetrics metrics;
     private final ScheduledTask tickTask;
+    private final ConcurrentMap<I, CompletableFuture<V>> pendingLoads = new ConcurrentHashMap<>();
 
     private boolean autoSave = true;
     private long autoSaveInterval = 15L;
     private TimeUnit autoSaveIntervalUnit = TimeUnit.MINUTES;
     private Instant lastAutoSave = Instant.now();
+    private DirtyTracking dirtyTracking = DirtyTracking.HASH;
+    private StorageCodec codec = GsonStorageCodec.INSTANCE;
+    private Executor asyncExecutor = Schedulers.BACKEND::run;
+    private WriteBehindQueue<I, V> writeBehindQueue;
+    private volatile SpillCache<I> spillCache;
+    // The spill stamps of values that were written back and are about to be removed from the cache
+    private final ConcurrentMap<I, Long> spillStamps = new ConcurrentHashMap<>();
+    // The evicted values that are written back in the background, they stay cached until the write finished
+    private final ConcurrentMap<I, CompletableFuture<Void>> pendingWriteBacks = new ConcurrentHashMap<>();
+    private volatile InvalidationChannel invalidationChannel;
+    private CacheWarmup<I> warmup;
+    private volatile CacheWarmupTask<I, V> warmupTask;
 
     public StorageService(Class<V> storageObjectClass) {
         this(storageObjectClass, null, null);
@@ -28,11 +67,17 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
     public StorageService(Class<V> storageObjectClass, Long cacheTime, TimeUnit cacheTimeUnit) {
         this.storageObjectClass = storageObjectClass;
         this.cache = new ServiceCache<>(cacheTime, cacheTimeUnit);
+        this.cache.setEvictionWriter(this::writeBack);
+        this.cache.addRemovalListener(this::onCacheRemoval);
+        this.metrics = new StorageMetrics(getCollectionName(), this.cache.getStats(), this.cache::size);
+        this.metrics.registerMBean();
         this.tickTask = Schedulers.BACKEND.run(this::tick, 1L, 1L, TimeUnit.SECONDS);
     }
 
     /**
      * Start the {@link StorageService}.
+     * <p>
+     * Implementations call {@link #startWarmup()} once the service is ready to load values.
      */
     public abstract void startup();
 
@@ -40,18 +85,58 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
      * Stop the {@link StorageService}.
      */
     public void shutdown() {
+        // Stop warming up, nothing is served anymore
+        CacheWarmupTask<I, V> warmupTask = this.warmupTask;
+        if (warmupTask != null) {
+            warmupTask.cancel();
+        }
+
+        // Drain the pending writes before saving the rest of the data
+        if (this.writeBehindQueue != null) {
+            this.writeBehindQueue.shutdown();
+        }
+
+        // Wait for the evicted values that are still being written, failed ones are dirty again and saved below
+        CompletableFuture.allOf(this.pendingWriteBacks.values().toArray(CompletableFuture[]::new)).join();
+
         // Save all the data
         saveAll();
+        release();
+    }
+
+    /**
+     * Stop the tick task and the invalidations, release the off-heap memory and unregister the metrics, without
+     * saving anything.
+     */
+    protected void release() {
         // Cancel the tick task
         this.tickTask.cancel();
+
+        // Stop receiving invalidations, the channel itself might be shared
+        InvalidationChannel invalidationChannel = this.invalidationChannel;
+        if (invalidationChannel != null) {
+            invalidationChannel.unsubscribe(getCollectionName());
+        }
+
+        // Release the off-heap memory
+        SpillCache<I> spillCache = this.spillCache;
+        if (spillCache != null) {
+            spillCache.clear();
+        }
+
+        this.metrics.unregisterMBean();
     }
 
     /**
      * Tick the {@link StorageService}.
      */
     public void tick() {
-        // Run the cache cleanup
-        this.cache.clean();
+        // Run the cache cleanup, a failure must not stop the auto save or the next ticks
+        try {
+            this.cache.clean();
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
 
         // If the auto save is disabled, return
         if (!this.autoSave) {
@@ -63,12 +148,151 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
             return;
         }
 
-        // Save all the data
-        saveAll();
+        // Save all the data, the values that failed are written again on the next auto save
+        try {
+            saveAll();
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
+
         // Update the last auto save
         this.lastAutoSave = Instant.now();
     }
 
+    /**
+     * Called when a value is removed from the {@link ServiceCache}.
+     *
+     * @param value The value that was removed
+     * @param cause The reason the value was removed
+     */
+    protected void onCacheRemoval(V value, RemovalCause cause) {
+        // Expired and evicted values are demoted to the spill cache if there is one, once they were written back
+        I identifier = value.getIdentifier();
+        Long stamp = this.spillStamps.remove(identifier);
+
+        SpillCache<I> spillCache = this.spillCache;
+        if (spillCache == null || cause == RemovalCause.EXPLICIT || stamp == null) {
+            return;
+        }
+
+        // The spilled bytes match the database, unless the value was cached again, deleted or invalidated since
+        if (!contains(identifier)) {
+            spillCache.put(identifier, this.codec.encode(value), stamp);
+        }
+    }
+
+    /**
+     * Called before a value expires or is evicted from the {@link ServiceCache}, while it's still cached.
+     * <p>
+     * Changed values are written in the background, so the caller that triggered the removal never waits for
+     * the backend. They stay cached until the write finished and are removed afterwards.
+     *
+     * @param value The value that is about to be removed
+     * @param cause The reason the value is removed
+     * @return If the value may be removed, false if it's kept cached while its changes are written
+     */
+    protected boolean writeBack(V value, RemovalCause cause) {
+        // Only persist values that are evicted because the cache is full, or that are spilled
+        if (cause != RemovalCause.SIZE && this.spillCache == null) {
+            return true;
+        }
+
+        // A value that is still being written stays cached until the write finished
+        I identifier = value.getIdentifier();
+        if (this.pendingWriteBacks.containsKey(identifier)) {
+            return false;
+        }
+
+        if (needsSave(value)) {
+            writeBackAsync(value, cause);
+            return false;
+        }
+
+        stampSpill(identifier);
+        return true;
+    }
+
+    /**
+     * Write an evicted value on the write-behind queue or the async executor, and remove it from the
+     * {@link ServiceCache} once it's written.
+     *
+     * @param value The value that passed {@link #needsSave(StorageObject)}
+     * @param cause The reason the value is removed
+     */
+    private void writeBackAsync(V value, RemovalCause cause) {
+        I identifier = value.getIdentifier();
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        if (this.pendingWriteBacks.putIfAbsent(identifier, written) != null) {
+            return;
+        }
+
+        CompletableFuture<Void> save;
+        try {
+            save = saveAsync(value);
+        } catch (RuntimeException ex) {
+            save = CompletableFuture.failedFuture(ex);
+        }
+
+        save.whenComplete((ignored, ex) -> {
+            try {
+                if (ex != null) {
+                    // Keep the value cached, the next eviction or auto save writes it again
+                    value.markDirty();
+                    ex.printStackTrace();
+                    return;
+                }
+
+                // Changes made during the write keep the value cached, like values whose write failed
+                if (!isUnchanged(value)) {
+                    return;
+                }
+
+                stampSpill(identifier);
+                if (!this.cache.removeWrittenBack(value, cause)) {
+                    this.spillStamps.remove(identifier);
+                }
+            } catch (RuntimeException removeEx) {
+                removeEx.printStackTrace();
+            } finally {
+                this.pendingWriteBacks.remove(identifier, written);
+                written.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Stamp a value that is about to be spilled.
+     * <p>
+     * The stamp is taken after the save forgot the old spilled copy, so only later deletes and invalidations
+     * stop the spill.
+     *
+     * @param identifier The identifier of the value
+     */
+    private void stampSpill(I identifier) {
+        SpillCache<I> spillCache = this.spillCache;
+        if (spillCache != null) {
+            this.spillStamps.put(identifier, spillCache.stamp(identifier));
+        }
+    }
+
+    /**
+     * Check if a {@link StorageObject} didn't change since it was last saved, without clearing its dirty flag.
+     *
+     * @param value The value you want to check
+     * @return If the value matches what was saved
+     */
+    private boolean isUnchanged(V value) {
+        if (value.isDirty()) {
+            return false;
+        }
+
+        if (this.dirtyTracking != DirtyTracking.HASH) {
+            return true;
+        }
+
+        return StorageUtil.hash(encodeForHash(value)) == value.getSavedHash();
+    }
+
     /**
      * Set the auto save interval.
      *
@@ -89,8 +313,197 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
         this.autoSave = autoSave;
     }
 
+    /**
+     * Set which cached values are written when all values are saved, defaults to {@link DirtyTracking#HASH}.
+     *
+     * @param dirtyTracking The {@link DirtyTracking} mode
+     */
+    public void setDirtyTracking(DirtyTracking dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+    }
+
+    /**
+     * Set the {@link StorageCodec} the values are serialized with, defaults to {@link GsonStorageCodec}.
+     * <p>
+     * Data written with another codec can't be read anymore, so set this before the service is started.
+     *
+     * @param codec The {@link StorageCodec} you want to use
+     */
+    public void setCodec(StorageCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Get the {@link StorageCodec} the values are serialized with.
+     *
+     * @return The {@link StorageCodec}
+     */
+    public StorageCodec getCodec() {
+        return this.codec;
+    }
+
+    /**
+     * Set the {@link Executor} the async operations run on, defaults to {@link Schedulers#BACKEND}.
+     *
+     * @param asyncExecutor The {@link Executor} you want to use
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Enable write-behind for {@link #saveAsync(StorageObject)} and {@link #deleteAsync(StorageObject)}.
+     * <p>
+     * Async writes are then queued per identifier and only the latest state is written, in batches on the
+     * given interval or as soon as the batch size is reached. The queue is drained on {@link #shutdown()}.
+     * Synchronous writes bypass the queue, so don't mix them with async writes for the same value.
+     *
+     * @param flushInterval     The interval the queue is flushed on
+     * @param flushIntervalUnit The {@link TimeUnit} of the flush interval
+     * @param batchSize         The amount of pending writes that triggers an early flush
+     */
+    public void enableWriteBehind(long flushInterval, TimeUnit flushIntervalUnit, int batchSize) {
+        if (this.writeBehindQueue != null) {
+            this.writeBehindQueue.shutdown();
+        }
+
+        this.writeBehindQueue = new WriteBehindQueue<>(this, flushInterval, flushIntervalUnit, batchSize);
+    }
+
+    /**
+     * Enable the spill cache, a second cache tier that keeps expired and evicted values encoded off-heap.
+     * <p>
+     * Values are then saved when they expire, like they are when they're evicted, and demoted to the
+     * {@link SpillCache}. A later get promotes them back without reading the database.
+     *
+     * @param maximumSize The maximum amount of off-heap bytes
+     * @param compress    If the values should be compressed
+     */
+    public void enableSpillCache(long maximumSize, boolean compress) {
+        int slabSize = (int) Math.min(SpillCache.DEFAULT_SLAB_SIZE, maximumSize);
+        this.spillCache = new SpillCache<>(maximumSize, slabSize, compress);
+    }
+
+    /**
+     * Get the {@link SpillCache} of the {@link StorageService}.
+     *
+     * @return The {@link SpillCache}, or null if it isn't enabled
+     */
+    public @Nullable SpillCache<I> getSpillCache() {
+        return this.spillCache;
+    }
+
+    /**
+     * Set the {@link InvalidationChannel} that keeps the caches of several nodes that share a database consistent.
+     * <p>
+     * Every write of this service is then published on the channel, and the cached copies of the values other
+     * nodes write are invalidated, so they're loaded again on the next get. This makes long cache times safe.
+     *
+     * @param invalidationChannel The {@link InvalidationChannel}, or null to stop using one
+     */
+    public void setInvalidationChannel(@Nullable InvalidationChannel invalidationChannel) {
+        InvalidationChannel previous = this.invalidationChannel;
+        if (previous != null) {
+            previous.unsubscribe(getCollectionName());
+        }
+
+        this.invalidationChannel = invalidationChannel;
+        if (invalidationChannel != null) {
+            invalidationChannel.subscribe(getCollectionName(), new InvalidationListener() {
+                @Override
+                public void onInvalidate(String key) {
+                    I identifier = parseInvalidationKey(key);
+                    if (identifier != null) {
+                        invalidate(identifier);
+                    }
+                }
+
+                @Override
+                public void onInvalidateAll() {
+                    invalidateAll();
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the {@link InvalidationChannel} of the {@link StorageService}.
+     *
+     * @return The {@link InvalidationChannel}, or null if there's none
+     */
+    public @Nullable InvalidationChannel getInvalidationChannel() {
+        return this.invalidationChannel;
+    }
+
+    /**
+     * Set the {@link CacheWarmup} that runs in the background when the service is started.
+     *
+     * @param warmup The {@link CacheWarmup}, or null to not warm up the cache
+     */
+    public void setWarmup(@Nullable CacheWarmup<I> warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * Warm up the cache in the background, the values that aren't warm yet are still loaded on demand.
+     *
+     * @param warmup The {@link CacheWarmup}
+     * @return A {@link CompletableFuture} completed with the amount of processed values once the warm-up is done
+     */
+    public CompletableFuture<Long> warmUp(CacheWarmup<I> warmup) {
+        CacheWarmupTask<I, V> warmupTask = new CacheWarmupTask<>(this, warmup);
+        this.warmupTask = warmupTask;
+        return warmupTask.start();
+    }
+
+    /**
+     * Get the {@link CompletableFuture} of the last warm-up.
+     *
+     * @return The {@link CompletableFuture}, completed with the amount of processed values, or null if the cache
+     * was never warmed up
+     */
+    public @Nullable CompletableFuture<Long> getWarmupFuture() {
+        CacheWarmupTask<I, V> warmupTask = this.warmupTask;
+        return warmupTask == null ? null : warmupTask.getFuture();
+    }
+
+    /**
+     * Start the {@link CacheWarmup} that was set, if any.
+     */
+    protected void startWarmup() {
+        CacheWarmup<I> warmup = this.warmup;
+        if (warmup == null) {
+            return;
+        }
+
+        warmUp(warmup);
+    }
+
+    /**
+     * Get the {@link StorageMetrics} of the {@link StorageService}, the counters and latencies of its collection.
+     * <p>
+     * They're also exposed through JMX while the service runs, under the {@value StorageMetrics#JMX_DOMAIN} domain.
+     *
+     * @return The {@link StorageMetrics}
+     */
+    public StorageMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Get the {@link WriteBehindQueue} of the {@link StorageService}.
+     *
+     * @return The {@link WriteBehindQueue}, or null if write-behind isn't enabled
+     */
+    public @Nullable WriteBehindQueue<I, V> getWriteBehindQueue() {
+        return this.writeBehindQueue;
+    }
+
     /**
      * Get a {@link StorageObject} from the database.
+     * <p>
+     * If the value should be cached, a cached value is returned as is and concurrent misses for the same
+     * identifier share one load, see {@link #getOrLoad(Object, Supplier)}.
      *
      * @param identifier The identifier of the value you want to get
      * @param cache      If the value should be cached
@@ -108,6 +521,419 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
         return get(identifier, true);
     }
 
+    /**
+     * Get a cached {@link StorageObject}, or load it if it isn't cached.
+     * <p>
+     * Concurrent calls for the same identifier share a single load, so the database is read once and every
+     * caller gets the same instance. The loader is expected to add the value it loads to the cache.
+     * <p>
+     * If the {@link ServiceCache} remembers missing identifiers, an identifier that wasn't found isn't looked
+     * up again until it expires or a value with the identifier is saved.
+     *
+     * @param identifier The identifier of the value you want to get
+     * @param loader     Loads the value from the database and caches it
+     * @return The cached or loaded value, or null if it doesn't exist
+     */
+    protected @Nullable V getOrLoad(I identifier, Supplier<@Nullable V> loader) {
+        V cached = this.cache.getCachedValue(identifier);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (this.cache.isMissing(identifier)) {
+            this.metrics.recordMissingHit();
+            return null;
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> pendingLoad = this.pendingLoads.putIfAbsent(identifier, load);
+        if (pendingLoad != null) {
+            // Another thread is already loading the value, wait for it
+            return awaitLoad(pendingLoad);
+        }
+
+        try {
+            // A load that finished between the cache check and claiming the load already cached the value
+            V value = this.cache.contains(identifier) ? this.cache.getCachedValue(identifier) : null;
+            if (value == null) {
+                value = promote(identifier);
+            }
+
+            if (value == null) {
+                long missingStamp = this.cache.getMissingStamp();
+                value = loader.get();
+                if (value == null) {
+                    this.cache.addMissing(identifier, missingStamp);
+                }
+            }
+
+            load.complete(value);
+            return value;
+        } catch (Throwable ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.pendingLoads.remove(identifier, load);
+        }
+    }
+
+    /**
+     * Move a value from the {@link SpillCache} back to the cache.
+     *
+     * @param identifier The identifier of the value
+     * @return The value, or null if it isn't spilled
+     */
+    private @Nullable V promote(I identifier) {
+        SpillCache<I> spillCache = this.spillCache;
+        if (spillCache == null) {
+            return null;
+        }
+
+        byte[] bytes = spillCache.take(identifier);
+        if (bytes == null) {
+            return null;
+        }
+
+        try {
+            V value = this.codec.decode(bytes, this.storageObjectClass);
+            cacheLoaded(value);
+            this.metrics.recordSpillHit();
+            return value;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Forget what the caches know about an identifier that a write made outdated, call this after a value was
+     * written to or deleted from the database.
+     *
+     * @param identifier The identifier of the value
+     */
+    protected void onWrite(I identifier) {
+        onWrite(List.of(identifier));
+    }
+
+    /**
+     * Forget what the caches know about identifiers that writes made outdated and tell the other nodes about
+     * the writes, call this after values were written to or deleted from the database.
+     *
+     * @param identifiers The identifiers of the values
+     */
+    protected void onWrite(Collection<I> identifiers) {
+        if (identifiers.isEmpty()) {
+            return;
+        }
+
+        for (I identifier : identifiers) {
+            forget(identifier);
+        }
+
+        InvalidationChannel invalidationChannel = this.invalidationChannel;
+        if (invalidationChannel == null) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(identifiers.size());
+        for (I identifier : identifiers) {
+            keys.add(StorageUtil.getGson().toJson(identifier));
+        }
+
+        try {
+            invalidationChannel.publish(getCollectionName(), keys);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Drop everything that is cached about an identifier, because another node wrote the value.
+     * <p>
+     * Changes to the cached value that weren't saved yet are lost, the write of the other node wins.
+     *
+     * @param identifier The identifier of the value
+     */
+    public void invalidate(I identifier) {
+        removeFromCache(identifier);
+        forget(identifier);
+    }
+
+    /**
+     * Drop everything that is cached, because writes of other nodes might have been missed.
+     */
+    public void invalidateAll() {
+        for (V value : this.cache.getCachedValues()) {
+            removeFromCache(value.getIdentifier());
+        }
+
+        this.cache.clearMissing();
+
+        SpillCache<I> spillCache = this.spillCache;
+        if (spillCache != null) {
+            spillCache.clear();
+        }
+    }
+
+    /**
+     * Get the name of the collection of this service, the topic its writes are published on and the name its
+     * metrics are registered with.
+     *
+     * @return The name of the collection
+     */
+    private String getCollectionName() {
+        StorageContext storageContext = getStorageContext();
+        return storageContext == null ? this.storageObjectClass.getName() : storageContext.collectionName();
+    }
+
+    /**
+     * Parse the key of an invalidation back to an identifier.
+     *
+     * @param key The key
+     * @return The identifier, or null if the key couldn't be parsed
+     */
+    private @Nullable I parseInvalidationKey(String key) {
+        try {
+            // The identifier type is the return type of the implemented getIdentifier method
+            Type identifierType = this.storageObjectClass.getMethod("getIdentifier").getGenericReturnType();
+            return StorageUtil.getGson().fromJson(key, identifierType);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Forget the negative cache entry and the spilled copy of an identifier.
+     *
+     * @param identifier The identifier of the value
+     */
+    private void forget(I identifier) {
+        this.cache.removeMissing(identifier);
+
+        SpillCache<I> spillCache = this.spillCache;
+        if (spillCache != null) {
+            spillCache.remove(identifier);
+        }
+    }
+
+    /**
+     * Wait for a load that was started by another thread.
+     *
+     * @param load The pending load
+     * @return The loaded value
+     */
+    private @Nullable V awaitLoad(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException ex) {
+            // Rethrow the failure of the load as if this thread ran it
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            } else if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Get a {@link StorageObject} from the database asynchronously.
+     *
+     * @param identifier The identifier of the value you want to get
+     * @param cache      If the value should be cached
+     * @return A {@link CompletableFuture} completed with the value, or with null if it doesn't exist
+     */
+    public CompletableFuture<@Nullable V> getAsync(I identifier, boolean cache) {
+        return CompletableFuture.supplyAsync(() -> get(identifier, cache), this.asyncExecutor);
+    }
+
+    /**
+     * Get a {@link StorageObject} from the database asynchronously.
+     *
+     * @param identifier The identifier of the value you want to get
+     * @return A {@link CompletableFuture} completed with the value, or with null if it doesn't exist
+     */
+    public CompletableFuture<@Nullable V> getAsync(I identifier) {
+        return getAsync(identifier, true);
+    }
+
+    /**
+     * Get multiple {@link StorageObject}s at once.
+     * <p>
+     * Cached values are returned as is, the others are loaded together, which backends that support it do in
+     * a single round trip or in parallel.
+     *
+     * @param identifiers The identifiers of the values you want to get
+     * @param cache       If the values should be cached
+     * @return The values that exist by their identifier, in the order of the identifiers
+     */
+    public Map<I, V> getMany(Collection<I> identifiers, boolean cache) {
+        long start = System.nanoTime();
+        try {
+            return loadCachedMany(identifiers, cache);
+        } finally {
+            this.metrics.record(Operation.GET_MANY, start);
+        }
+    }
+
+    /**
+     * Get multiple {@link StorageObject}s at once, see {@link #getMany(Collection, boolean)}.
+     *
+     * @param identifiers The identifiers of the values you want to get
+     * @param cache       If the values should be cached
+     * @return The values that exist by their identifier, in the order of the identifiers
+     */
+    private Map<I, V> loadCachedMany(Collection<I> identifiers, boolean cache) {
+        Map<I, V> values = new LinkedHashMap<>();
+        List<I> missing = new ArrayList<>();
+        for (I identifier : identifiers) {
+            if (values.containsKey(identifier)) {
+                continue;
+            }
+
+            // Reserve the position of the identifier, so the result keeps the order
+            values.put(identifier, null);
+
+            V cached = cache ? this.cache.getCachedValue(identifier) : null;
+            if (cache && cached == null) {
+                cached = promote(identifier);
+            }
+
+            if (cached != null) {
+                values.put(identifier, cached);
+            } else if (cache && this.cache.isMissing(identifier)) {
+                this.metrics.recordMissingHit();
+            } else {
+                missing.add(identifier);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long missingStamp = this.cache.getMissingStamp();
+            Map<I, V> loaded = loadMany(missing);
+
+            // Remember the misses first, caching the values would invalidate the stamp
+            if (cache) {
+                for (I identifier : missing) {
+                    if (!loaded.containsKey(identifier)) {
+                        this.cache.addMissing(identifier, missingStamp);
+                    }
+                }
+            }
+
+            for (I identifier : missing) {
+                V value = loaded.get(identifier);
+                if (!cache || value == null) {
+                    values.put(identifier, value);
+                    continue;
+                }
+
+                values.put(identifier, cacheLoadedIfAbsent(value));
+            }
+        }
+
+        values.values().removeIf(Objects::isNull);
+        return values;
+    }
+
+    /**
+     * Get multiple {@link StorageObject}s at once, caching them.
+     *
+     * @param identifiers The identifiers of the values you want to get
+     * @return The values that exist by their identifier, in the order of the identifiers
+     * @see #getMany(Collection, boolean)
+     */
+    public Map<I, V> getMany(Collection<I> identifiers) {
+        return getMany(identifiers, true);
+    }
+
+    /**
+     * Get multiple {@link StorageObject}s at once asynchronously.
+     *
+     * @param identifiers The identifiers of the values you want to get
+     * @param cache       If the values should be cached
+     * @return A {@link CompletableFuture} completed with the values that exist by their identifier
+     */
+    public CompletableFuture<Map<I, V>> getManyAsync(Collection<I> identifiers, boolean cache) {
+        return CompletableFuture.supplyAsync(() -> getMany(identifiers, cache), this.asyncExecutor);
+    }
+
+    /**
+     * Load multiple {@link StorageObject}s from the database, without caching them.
+     * <p>
+     * Backends that can load values in bulk override this, the default implementation loads them one by one.
+     *
+     * @param identifiers The identifiers of the values you want to load
+     * @return The values that exist by their identifier
+     */
+    protected Map<I, V> loadMany(Collection<I> identifiers) {
+        Map<I, V> values = new LinkedHashMap<>();
+        for (I identifier : identifiers) {
+            V value = get(identifier, false);
+            if (value != null) {
+                values.put(identifier, value);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Add a {@link StorageObject} that was just loaded from the database to the cache.
+     *
+     * @param value The value that was loaded
+     */
+    protected void cacheLoaded(V value) {
+        markSaved(value, null);
+        addToCache(value);
+    }
+
+    /**
+     * Cache a {@link StorageObject} that was just loaded, unless another instance with its identifier is cached
+     * already. Changes made to the cached instance must not be replaced by what was loaded.
+     *
+     * @param value The value that was loaded
+     * @return The cached instance, which is the loaded value if nothing was cached yet
+     */
+    protected V cacheLoadedIfAbsent(V value) {
+        I identifier = value.getIdentifier();
+        V cached = this.cache.contains(identifier) ? this.cache.getCachedValue(identifier) : null;
+        if (cached != null) {
+            return cached;
+        }
+
+        cacheLoaded(value);
+        return value;
+    }
+
+    /**
+     * Remember the state a {@link StorageObject} has in the database, so {@link DirtyTracking#HASH} only writes
+     * it again once it changed. Call this when a value is loaded and after it was written successfully.
+     *
+     * @param value   The value
+     * @param encoded The bytes {@link #encodeForHash(StorageObject)} returns for the written state, or null to encode it again
+     */
+    protected void markSaved(V value, byte @Nullable [] encoded) {
+        if (this.dirtyTracking != DirtyTracking.HASH) {
+            return;
+        }
+
+        value.setSavedHash(StorageUtil.hash(encoded != null ? encoded : encodeForHash(value)));
+    }
+
+    /**
+     * Encode a {@link StorageObject} to the bytes {@link DirtyTracking#HASH} compares, the bytes of the
+     * {@link StorageCodec} by default.
+     *
+     * @param value The value you want to encode
+     * @return The encoded value
+     */
+    protected byte[] encodeForHash(V value) {
+        return this.codec.encode(value);
+    }
+
     /**
      * Get all {@link StorageObject}s from the database.
      *
@@ -125,6 +951,114 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
         return getAll(false);
     }
 
+    /**
+     * Stream all {@link StorageObject}s from the database.
+     * <p>
+     * Backends that support it deserialize the values lazily while the stream is consumed, so only a small
+     * batch is held in memory at once. The stream holds database resources, so always close it, for example
+     * with a try-with-resources block.
+     *
+     * @param cache If the values should be cached while they're streamed
+     * @return A {@link Stream} of all the values
+     */
+    public Stream<V> stream(boolean cache) {
+        return getAll(cache).stream();
+    }
+
+    /**
+     * Stream all {@link StorageObject}s from the database, without caching them.
+     *
+     * @return A {@link Stream} of all the values
+     * @see #stream(boolean)
+     */
+    public Stream<V> stream() {
+        return stream(false);
+    }
+
+    /**
+     * Get all {@link StorageObject}s from the database asynchronously.
+     *
+     * @param cache If the values should be cached
+     * @return A {@link CompletableFuture} completed with all the values
+     */
+    public CompletableFuture<Collection<V>> getAllAsync(boolean cache) {
+        return CompletableFuture.supplyAsync(() -> getAll(cache), this.asyncExecutor);
+    }
+
+    /**
+     * Get all {@link StorageObject}s from the database asynchronously.
+     *
+     * @return A {@link CompletableFuture} completed with all the values
+     */
+    public CompletableFuture<Collection<V>> getAllAsync() {
+        return getAllAsync(false);
+    }
+
+    /**
+     * Get the {@link StorageObject}s that match a {@link Query}.
+     * <p>
+     * Backends that support it evaluate the query in the database or before deserializing the values, the
+     * default implementation streams all values and filters them in memory. Only the matching values are cached.
+     *
+     * @param query The query
+     * @param cache If the matching values should be cached
+     * @return The matching values, sorted and limited like the query says
+     */
+    public List<V> query(Query query, boolean cache) {
+        long start = System.nanoTime();
+        List<V> values;
+        try (Stream<V> stream = stream(false)) {
+            values = query.apply(stream).collect(Collectors.toCollection(ArrayList::new));
+        } finally {
+            this.metrics.record(Operation.QUERY, start);
+        }
+
+        // Values that are cached already keep their instance, with the changes that weren't saved yet
+        if (cache) {
+            values.replaceAll(this::cacheLoadedIfAbsent);
+        }
+
+        return values;
+    }
+
+    /**
+     * Stream the identifiers of all {@link StorageObject}s, or of the ones that match a {@link Query}.
+     * <p>
+     * The cache warm-up reads the identifiers from this stream and loads the values when it caches them, so
+     * a value written while the warm-up is waiting isn't cached with its old state. Backends that support it
+     * only fetch the identifiers, the default implementation streams the values and evaluates the query in
+     * memory. The stream holds database resources, so always close it.
+     *
+     * @param query The query, or null for all values
+     * @return A {@link Stream} of the identifiers
+     */
+    protected Stream<I> streamIdentifiers(@Nullable Query query) {
+        Stream<V> values = stream(false);
+        return (query == null ? values : query.apply(values)).map(StorageObject::getIdentifier);
+    }
+
+    /**
+     * Get the {@link StorageObject}s that match a {@link Query}, without caching them.
+     *
+     * @param query The query
+     * @return The matching values
+     * @see #query(Query, boolean)
+     */
+    public List<V> query(Query query) {
+        return query(query, false);
+    }
+
+    /**
+     * Get the {@link StorageObject}s that match a {@link Query} asynchronously.
+     *
+     * @param query The query
+     * @param cache If the matching values should be cached
+     * @return A {@link CompletableFuture} completed with the matching values
+     */
+    public CompletableFuture<List<V>> queryAsync(Query query, boolean cache) {
+        return CompletableFuture.supplyAsync(() -> query(query, cache), this.asyncExecutor);
+    }
+
     /**
      * Get a {@link StorageObject} from the cache.
      *
@@ -174,16 +1108,65 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
      * Save a {@link StorageObject} to the database asynchronously.
      *
      * @param value The value you want to save
+     * @return A {@link CompletableFuture} completed once the value is saved
      */
-    public void saveAsync(V value) {
-        Schedulers.BACKEND.run(() -> save(value));
+    public CompletableFuture<Void> saveAsync(V value) {
+        if (this.writeBehindQueue != null) {
+            return this.writeBehindQueue.save(value);
+        }
+
+        return CompletableFuture.runAsync(() -> save(value), this.asyncExecutor);
     }
 
     /**
-     * Save all cached {@link StorageObject}s to the database.
+     * Save all changed cached {@link StorageObject}s to the database.
+     * <p>
+     * Which values count as changed depends on the {@link DirtyTracking} mode.
      */
     public void saveAll() {
+        long start = System.nanoTime();
+        try {
+            saveChanged();
+        } finally {
+            this.metrics.record(Operation.AUTO_SAVE, start);
+        }
+    }
+
+    /**
+     * Save all changed cached {@link StorageObject}s to the database, see {@link #saveAll()}.
+     */
+    private void saveChanged() {
+        List<V> values = new ArrayList<>();
         for (V value : this.cache.getCachedValues()) {
+            if (!needsSave(value)) {
+                continue;
+            }
+
+            values.add(value);
+        }
+
+        if (values.isEmpty()) {
+            return;
+        }
+
+        try {
+            saveAll(values);
+        } catch (RuntimeException ex) {
+            // We don't know which values made it, so write all of them again next time
+            values.forEach(StorageObject::markDirty);
+            throw ex;
+        }
+    }
+
+    /**
+     * Save multiple {@link StorageObject}s to the database.
+     * <p>
+     * Backends that support batching override this to write the values in as few round trips as possible.
+     *
+     * @param values The values you want to save
+     */
+    public void saveAll(Collection<V> values) {
+        for (V value : values) {
             save(value);
         }
     }
@@ -195,13 +1178,58 @@ public abstract class StorageService<I, V extends StorageObject<I>> {
      */
     public abstract void delete(V value);
 
+    /**
+     * Check if a {@link StorageObject} changed since it was last saved, and clear its dirty flag if so.
+     *
+     * @param value The value you want to check
+     * @return If the value should be written
+     */
+    protected boolean needsSave(V value) {
+        // The dirty flag is cleared before serializing, so changes made during the save mark it again
+        boolean dirty = value.clearDirty();
+
+        switch (this.dirtyTracking) {
+            case NONE:
+                return true;
+            case EXPLICIT:
+                return dirty;
+            default:
+                long hash = StorageUtil.hash(encodeForHash(value));
+                if (!dirty && hash == value.getSavedHash()) {
+                    return false;
+                }
+
+                value.setSavedHash(hash);
+                return true;
+        }
+    }
+
+    /**
+     * Save a {@link StorageObject} that passed {@link #needsSave(StorageObject)}, marking it dirty again if the save fails.
+     *
+     * @param value The value you want to save
+     */
+    private void saveTracked(V value) {
+        try {
+            save(value);
+        } catch (RuntimeException ex) {
+            value.markDirty();
+            throw ex;
+        }
+    }
+
     /**
      * Delete a {@link StorageObject} from the database asynchronously.
      *
      * @param value The value you want to delete
+     * @return A {@link CompletableFuture} completed once the value is deleted
      */
-    public void deleteAsync(V value) {
-        Schedulers.BACKEND.run(() -> delete(value));
+    public CompletableFuture<Void> deleteAsync(V value) {
+        if (this.writeBehindQueue != null) {
+            return this.writeBehindQueue.delete(value);
+        }
+
+        return CompletableFuture.runAsync(() -> delete(value), this.asyncExecutor);
     }
 
     /**
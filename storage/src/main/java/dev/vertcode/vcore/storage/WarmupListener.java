@@ -0,0 +1,17 @@
+package dev.vertcode.vcore.storage;
+
+/**
+ * Receives the progress of a {@link CacheWarmup}.
+ */
+@FunctionalInterface
+public interface WarmupListener {
+
+    /**
+     * Called after every loaded batch.
+     *
+     * @param loaded The amount of values that were loaded so far
+     * @param total  The amount of values that will be loaded, or -1 if that isn't known up front
+     */
+    void onProgress(long loaded, long total);
+
+}
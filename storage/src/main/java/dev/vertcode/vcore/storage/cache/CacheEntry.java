@@ -0,0 +1,29 @@
+package dev.vertcode.vcore.storage.cache;
+
+import dev.vertcode.vcore.storage.StorageObject;
+
+/**
+ * A single entry of the {@link ServiceCache}, holding the value together with the time it was cached.
+ * <p>
+ * Entries are immutable, replacing a value always swaps the whole entry so readers never see a value
+ * paired with the timestamp of another value.
+ *
+ * @param value    The cached value
+ * @param cachedAt The {@link System#nanoTime()} at which the value was cached
+ * @param <I>      The identifier type
+ * @param <V>      The value type
+ */
+public record CacheEntry<I, V extends StorageObject<I>>(V value, long cachedAt) {
+
+    /**
+     * Check if the entry is expired.
+     *
+     * @param cacheTimeNanos The time an entry may stay cached in nanoseconds
+     * @param now            The current {@link System#nanoTime()}
+     * @return If the entry is expired
+     */
+    public boolean isExpired(long cacheTimeNanos, long now) {
+        return now - this.cachedAt >= cacheTimeNanos;
+    }
+
+}
@@ -0,0 +1,244 @@
+package dev.vertcode.vcore.storage.cache;
+
+import dev.vertcode.vcore.storage.StorageObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A secondary index over the values of a {@link ServiceCache}, mapping a key extracted from every value to the
+ * values with that key.
+ * <p>
+ * The cache keeps its indexes up to date when values are added, replaced, removed, expired or evicted. The
+ * key of a value is extracted when it's indexed, so call {@link ServiceCache#reindex(Object)} after changing
+ * an indexed field of a cached value. Values with a null key aren't indexed.
+ * <p>
+ * A unique index holds a single value per key, if several values share a key the last indexed one wins.
+ *
+ * @param <K> The key type
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+public class CacheIndex<K, I, V extends StorageObject<I>> {
+
+    private final String name;
+    private final Function<? super V, ? extends K> keyExtractor;
+    private final boolean unique;
+    private final Function<I, V> lookup;
+
+    private final ConcurrentMap<I, IndexedValue<K, V>> indexedValues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, V> uniqueValues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Set<V>> multiValues = new ConcurrentHashMap<>();
+
+    CacheIndex(String name, Function<? super V, ? extends K> keyExtractor, boolean unique, Function<I, V> lookup) {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+        this.unique = unique;
+        this.lookup = lookup;
+    }
+
+    /**
+     * Get a value with a key.
+     *
+     * @param key The key
+     * @return A value with the key, or null if no cached value has the key
+     */
+    public @Nullable V get(K key) {
+        if (this.unique) {
+            return this.uniqueValues.get(key);
+        }
+
+        Set<V> values = this.multiValues.get(key);
+        if (values == null) {
+            return null;
+        }
+
+        for (V value : values) {
+            return value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get all values with a key.
+     *
+     * @param key The key
+     * @return A snapshot of the values with the key
+     */
+    public Collection<V> getAll(K key) {
+        if (this.unique) {
+            V value = this.uniqueValues.get(key);
+            return value == null ? Collections.emptyList() : List.of(value);
+        }
+
+        Set<V> values = this.multiValues.get(key);
+        return values == null ? Collections.emptyList() : List.copyOf(values);
+    }
+
+    /**
+     * Check if any cached value has a key.
+     *
+     * @param key The key
+     * @return If a value has the key
+     */
+    public boolean contains(K key) {
+        return this.unique ? this.uniqueValues.containsKey(key) : this.multiValues.containsKey(key);
+    }
+
+    /**
+     * Get all keys of the index.
+     *
+     * @return A live, weakly consistent view of the keys
+     */
+    public Set<K> getKeys() {
+        return Collections.unmodifiableSet(this.unique ? this.uniqueValues.keySet() : this.multiValues.keySet());
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isUnique() {
+        return this.unique;
+    }
+
+    /**
+     * Make the index match the value that is currently cached with an identifier.
+     * <p>
+     * This is serialized per identifier and always reads the current value, so concurrent changes of the same
+     * identifier leave the index matching the cache.
+     *
+     * @param identifier The identifier of the value
+     */
+    void refresh(I identifier) {
+        this.indexedValues.compute(identifier, (id, previous) -> {
+            V value = this.lookup.apply(id);
+            K key = value == null ? null : extractKey(value);
+
+            if (previous != null) {
+                // Nothing changed since the value was indexed
+                if (previous.value() == value && Objects.equals(previous.key(), key)) {
+                    return previous;
+                }
+
+                unlink(previous.key(), previous.value());
+            }
+
+            if (key == null) {
+                return null;
+            }
+
+            link(key, value);
+            return new IndexedValue<>(key, value);
+        });
+    }
+
+    /**
+     * Add a value to the key.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    private void link(K key, V value) {
+        if (this.unique) {
+            this.uniqueValues.put(key, value);
+            return;
+        }
+
+        this.multiValues.compute(key, (k, values) -> {
+            if (values == null) {
+                values = ConcurrentHashMap.newKeySet();
+            }
+
+            values.add(value);
+            return values;
+        });
+    }
+
+    /**
+     * Remove a value from the key.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    private void unlink(K key, V value) {
+        if (this.unique) {
+            // Another value might have taken over the key in the meantime
+            this.uniqueValues.remove(key, value);
+            return;
+        }
+
+        this.multiValues.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    /**
+     * Extract the key of a value.
+     *
+     * @param value The value
+     * @return The key, or null if the value shouldn't be indexed
+     */
+    private @Nullable K extractKey(V value) {
+        try {
+            return this.keyExtractor.apply(value);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Create a key extractor that reads a field of the values.
+     *
+     * @param fieldName The name of the field, it can be declared in a superclass
+     * @param <V>       The value type
+     * @return The key extractor
+     */
+    static <V> Function<V, Object> fieldExtractor(String fieldName) {
+        ClassValue<Field> fields = new ClassValue<>() {
+            @Override
+            protected Field computeValue(Class<?> type) {
+                for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                    try {
+                        Field field = current.getDeclaredField(fieldName);
+                        field.setAccessible(true);
+                        return field;
+                    } catch (NoSuchFieldException ignored) {
+                        // Look in the superclass
+                    }
+                }
+
+                throw new IllegalArgumentException("The field " + fieldName + " doesn't exist in " + type + ".");
+            }
+        };
+
+        return value -> {
+            try {
+                return fields.get(value.getClass()).get(value);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Couldn't read the field " + fieldName + ".", ex);
+            }
+        };
+    }
+
+    /**
+     * A value and the key it was indexed with.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    private record IndexedValue<K, V>(K key, V value) {
+    }
+
+}
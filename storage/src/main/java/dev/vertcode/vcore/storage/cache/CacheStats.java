@@ -0,0 +1,101 @@
+package dev.vertcode.vcore.storage.cache;
+
+import dev.vertcode.vcore.storage.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a {@link ServiceCache}, updated without locking.
+ */
+public class CacheStats {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LatencyHistogram cleanLatency = new LatencyHistogram();
+
+    void recordHit() {
+        this.hits.increment();
+    }
+
+    void recordMiss() {
+        this.misses.increment();
+    }
+
+    void recordRemoval(RemovalCause cause) {
+        switch (cause) {
+            case SIZE -> this.evictions.increment();
+            case EXPIRED -> this.expirations.increment();
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Get the amount of lookups that found a cached value.
+     *
+     * @return The amount of hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Get the amount of lookups that didn't find a cached value.
+     *
+     * @return The amount of misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Get the amount of values that were evicted because the cache was full.
+     *
+     * @return The amount of evictions
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Get the amount of values that were removed because they expired.
+     *
+     * @return The amount of expirations
+     */
+    public long getExpirations() {
+        return this.expirations.sum();
+    }
+
+    /**
+     * Get the latencies of {@link ServiceCache#clean()}.
+     *
+     * @return The {@link LatencyHistogram}
+     */
+    public LatencyHistogram getCleanLatency() {
+        return this.cleanLatency;
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public void reset() {
+        this.hits.reset();
+        this.misses.reset();
+        this.evictions.reset();
+        this.expirations.reset();
+        this.cleanLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                '}';
+    }
+
+}
@@ -0,0 +1,32 @@
+package dev.vertcode.vcore.storage.cache;
+
+import dev.vertcode.vcore.storage.StorageObject;
+
+/**
+ * Writes back a value before the {@link ServiceCache} drops it because it expired or was evicted.
+ * <p>
+ * The value stays cached while it's written, so concurrent lookups keep getting it instead of loading an
+ * outdated copy from the database.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+@FunctionalInterface
+public interface EvictionWriter<I, V extends StorageObject<I>> {
+
+    /**
+     * Called before an expired or evicted value is removed from the cache.
+     * <p>
+     * If this returns false or throws, the value stays cached and is written again the next time it expires
+     * or is evicted. Exceptions are rethrown to the caller that triggered the removal.
+     * <p>
+     * This runs on the thread that triggered the removal, writers that write in the background return false
+     * and remove the value with {@link ServiceCache#removeWrittenBack(StorageObject, RemovalCause)} once it's written.
+     *
+     * @param value The value that is about to be removed
+     * @param cause The reason the value is removed, {@link RemovalCause#EXPIRED} or {@link RemovalCause#SIZE}
+     * @return If the value may be removed
+     */
+    boolean write(V value, RemovalCause cause);
+
+}
@@ -0,0 +1,109 @@
+package dev.vertcode.vcore.storage.cache;
+
+/**
+ * A Count-Min sketch with 4-bit counters used to estimate how often an identifier was accessed.
+ * <p>
+ * The counters are halved once enough increments have been recorded, so old popularity fades out
+ * and the sketch keeps following the current workload. This class is not thread-safe.
+ *
+ * @param <E> The element type
+ */
+final class FrequencySketch<E> {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_TABLE_SIZE = 1 << 26;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    FrequencySketch(long expectedSize) {
+        int capacity = (int) Math.min(Math.max(expectedSize, 16L), MAXIMUM_TABLE_SIZE);
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = length * 10;
+    }
+
+    /**
+     * Get the estimated frequency of an element.
+     *
+     * @param element The element
+     * @return The estimated frequency, between 0 and 15
+     */
+    int frequency(E element) {
+        int hash = spread(element.hashCode());
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long indexHash = indexHash(hash, i);
+            int shift = counterShift(indexHash);
+
+            frequency = Math.min(frequency, (int) ((this.table[tableIndex(indexHash)] >>> shift) & 15L));
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Increment the frequency of an element, if it isn't at its maximum already.
+     *
+     * @param element The element
+     */
+    void increment(E element) {
+        int hash = spread(element.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long indexHash = indexHash(hash, i);
+            int index = tableIndex(indexHash);
+            int shift = counterShift(indexHash);
+
+            // The counter is saturated
+            if (((this.table[index] >>> shift) & 15L) == 15L) {
+                continue;
+            }
+
+            this.table[index] += 1L << shift;
+            added = true;
+        }
+
+        if (added && ++this.size >= this.sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halve all the counters, so the sketch ages.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+
+        this.size /= 2;
+    }
+
+    private long indexHash(int hash, int depth) {
+        long indexHash = (hash + SEEDS[depth]) * SEEDS[depth];
+        return indexHash + (indexHash >>> 32);
+    }
+
+    private int tableIndex(long indexHash) {
+        return (int) indexHash & this.tableMask;
+    }
+
+    private int counterShift(long indexHash) {
+        return ((int) (indexHash >>> 40) & 15) << 2;
+    }
+
+    private int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+}
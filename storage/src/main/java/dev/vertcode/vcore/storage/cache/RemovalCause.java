@@ -0,0 +1,21 @@
+package dev.vertcode.vcore.storage.cache;
+
+/**
+ * The reason a value was removed from the {@link ServiceCache}.
+ */
+public enum RemovalCause {
+
+    /**
+     * The value was removed manually.
+     */
+    EXPLICIT,
+    /**
+     * The value was cached longer than the cache time.
+     */
+    EXPIRED,
+    /**
+     * The value was evicted because the cache exceeded its maximum size or weight.
+     */
+    SIZE
+
+}
@@ -0,0 +1,22 @@
+package dev.vertcode.vcore.storage.cache;
+
+import dev.vertcode.vcore.storage.StorageObject;
+
+/**
+ * A listener that gets notified when a value is removed from the {@link ServiceCache}.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+@FunctionalInterface
+public interface RemovalListener<I, V extends StorageObject<I>> {
+
+    /**
+     * Called after a value has been removed from the cache.
+     *
+     * @param value The value that was removed
+     * @param cause The reason the value was removed
+     */
+    void onRemoval(V value, RemovalCause cause);
+
+}
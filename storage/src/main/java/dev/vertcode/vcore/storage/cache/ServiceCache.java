@@ -1,21 +1,69 @@
 package dev.vertcode.vcore.storage.cache;
 
 import dev.vertcode.vcore.storage.StorageObject;
+import org.jetbrains.annotations.Nullable;
 
-import java.time.Instant;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
+/**
+ * A thread-safe cache for {@link StorageObject}s.
+ * <p>
+ * Reads never lock, writes are handled per bin by the underlying {@link ConcurrentHashMap}, so the cache
+ * can be used from the tick task, the async save workers and plugin threads at the same time.
+ * <p>
+ * Because every entry lives for the same cache time, entries expire in the order they were added. The
+ * cache keeps them in an insertion ordered expiry queue, so {@link #clean()} only touches the entries that
+ * actually expired instead of scanning the whole cache.
+ * <p>
+ * The cache can optionally be bounded by a maximum size or weight, see {@link #setMaximumSize(long)} and
+ * {@link #setMaximumWeight(long, Weigher)}. A bounded cache evicts with a W-TinyLFU policy, writes are
+ * then serialized by the policy lock while reads stay lock-free and only record their access when the
+ * lock is free.
+ * <p>
+ * An {@link EvictionWriter} can write back expired and evicted values before they're removed, see
+ * {@link #setEvictionWriter(EvictionWriter)}.
+ * <p>
+ * Values can be looked up by other keys than their identifier through {@link CacheIndex}es, which the cache
+ * keeps up to date, see {@link #addIndex(String, Function, boolean)}.
+ * <p>
+ * Identifiers that don't exist in the database can optionally be remembered for a short time, so repeated
+ * lookups of them don't reach the database, see {@link #setMissingCacheTime(long, TimeUnit)}.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
 public class ServiceCache<I, V extends StorageObject<I>> {
 
-    private final Map<I, V> cacheValues = new HashMap<>();
-    private final Map<I, Instant> cacheTimes = new HashMap<>();
+    private final ConcurrentMap<I, CacheEntry<I, V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<CacheEntry<I, V>> expiryQueue = new ConcurrentLinkedQueue<>();
+    private final Collection<V> valuesView = new ValuesView();
+    private final List<RemovalListener<I, V>> removalListeners = new CopyOnWriteArrayList<>();
+    private final List<CacheIndex<?, I, V>> indexes = new CopyOnWriteArrayList<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final ConcurrentMap<I, Long> missingIdentifiers = new ConcurrentHashMap<>();
+    private final AtomicLong missingStamp = new AtomicLong();
+    private final CacheStats stats = new CacheStats();
 
     private final Long cacheTime;
     private final TimeUnit cacheTimeUnit;
+    private final long cacheTimeNanos;
+
+    private volatile SizePolicy<I> sizePolicy;
+    private volatile Weigher<? super V> weigher;
+    private volatile EvictionWriter<I, V> evictionWriter;
+    private volatile long missingTimeNanos = -1L;
 
     public ServiceCache() {
         this(null, null);
@@ -24,18 +72,39 @@ public class ServiceCache<I, V extends StorageObject<I>> {
     public ServiceCache(Long cacheTime, TimeUnit cacheTimeUnit) {
         this.cacheTime = cacheTime;
         this.cacheTimeUnit = cacheTimeUnit;
+        this.cacheTimeNanos = cacheTime == null || cacheTimeUnit == null ? -1L : cacheTimeUnit.toNanos(cacheTime);
     }
 
     /**
      * Add a value to the cache.
+     * <p>
+     * If this evicts values and the {@link EvictionWriter} fails to write one of them back, the value is added
+     * anyway and the failure is rethrown.
      *
      * @param value The value you want to add
      */
     public void add(V value) {
-        I identifier = value.getIdentifier();
+        CacheEntry<I, V> entry = new CacheEntry<>(value, System.nanoTime());
+
+        if (this.sizePolicy == null) {
+            this.entries.put(value.getIdentifier(), entry);
 
-        this.cacheValues.put(identifier, value);
-        this.cacheTimes.put(identifier, Instant.now());
+            // A bound that was set while the value was added might not have seen it
+            if (this.sizePolicy != null) {
+                addBounded(entry);
+            }
+        } else {
+            addBounded(entry);
+        }
+
+        // Only track the expiry if the cache actually expires
+        if (this.cacheTimeNanos >= 0L) {
+            this.expiryQueue.offer(entry);
+        }
+
+        refreshIndexes(value.getIdentifier());
+        // The value exists now
+        removeMissing(value.getIdentifier());
     }
 
     /**
@@ -44,8 +113,30 @@ public class ServiceCache<I, V extends StorageObject<I>> {
      * @param identifier The identifier of the value you want to remove
      */
     public void remove(I identifier) {
-        this.cacheValues.remove(identifier);
-        this.cacheTimes.remove(identifier);
+        CacheEntry<I, V> entry = removeEntry(identifier, null);
+        if (entry == null) {
+            return;
+        }
+
+        notifyRemoval(entry.value(), RemovalCause.EXPLICIT);
+    }
+
+    /**
+     * Remove a value that an {@link EvictionWriter} kept cached while it was written back in the background.
+     *
+     * @param value The value that was written back
+     * @param cause The reason the value is removed, {@link RemovalCause#EXPIRED} or {@link RemovalCause#SIZE}
+     * @return If the value was removed, false if it was replaced or removed in the meantime
+     */
+    public boolean removeWrittenBack(V value, RemovalCause cause) {
+        I identifier = value.getIdentifier();
+        CacheEntry<I, V> entry = this.entries.get(identifier);
+        if (entry == null || entry.value() != value || removeEntry(identifier, entry) == null) {
+            return false;
+        }
+
+        notifyRemoval(value, cause);
+        return true;
     }
 
     /**
@@ -55,7 +146,7 @@ public class ServiceCache<I, V extends StorageObject<I>> {
      * @return If the cache contains the value
      */
     public boolean contains(I identifier) {
-        return this.cacheValues.containsKey(identifier);
+        return this.entries.containsKey(identifier);
     }
 
     /**
@@ -65,53 +156,651 @@ public class ServiceCache<I, V extends StorageObject<I>> {
      * @return The cached value
      */
     public V getCachedValue(I identifier) {
-        return this.cacheValues.get(identifier);
+        CacheEntry<I, V> entry = this.entries.get(identifier);
+        if (entry == null) {
+            this.stats.recordMiss();
+            return null;
+        }
+
+        this.stats.recordHit();
+
+        // Record the access for the eviction policy, this is skipped when a writer holds the lock
+        SizePolicy<I> sizePolicy = this.sizePolicy;
+        if (sizePolicy != null && this.policyLock.tryLock()) {
+            try {
+                sizePolicy.recordAccess(identifier);
+            } finally {
+                this.policyLock.unlock();
+            }
+        }
+
+        return entry.value();
     }
 
     /**
      * Get all the cached values.
+     * <p>
+     * The returned collection is a live, weakly consistent view, iterating it never throws a
+     * {@link java.util.ConcurrentModificationException}.
      *
      * @return All the cached values
      */
     public Collection<V> getCachedValues() {
-        return this.cacheValues.values();
+        return this.valuesView;
+    }
+
+    /**
+     * Get the amount of cached values.
+     *
+     * @return The amount of cached values
+     */
+    public int size() {
+        return this.entries.size();
     }
 
     /**
      * The cache clean task.
+     * <p>
+     * Values the {@link EvictionWriter} fails to write back stay cached for another cache time, the first
+     * failure is rethrown once all expired values are handled.
      */
     public void clean() {
-        // If the cache time is null, we don't need to clean the cache
-        if (this.cacheTime == null || this.cacheTimeUnit == null) {
+        long now = System.nanoTime();
+        try {
+            removeExpired(now);
+        } finally {
+            this.stats.getCleanLatency().recordSince(now);
+        }
+    }
+
+    /**
+     * Get the hit, miss and removal counters of the cache.
+     *
+     * @return The {@link CacheStats}
+     */
+    public CacheStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Remove the expired values and missing identifiers.
+     *
+     * @param now The current {@link System#nanoTime()}
+     */
+    private void removeExpired(long now) {
+        // Forget the missing identifiers that expired
+        if (!this.missingIdentifiers.isEmpty()) {
+            this.missingIdentifiers.values().removeIf(expiresAt -> expiresAt - now <= 0L);
+        }
+
+        // If the cache time is not set, we don't need to clean the cache
+        if (this.cacheTimeNanos < 0L) {
             return;
         }
 
-        // Loop through all the cache values
-        for (I identifier : new ArrayList<>(this.cacheValues.keySet())) {
-            Instant cacheTime = this.cacheTimes.get(identifier);
-            // If the cache time is null, we don't need to clean the cache
-            if (cacheTime == null) {
+        List<CacheEntry<I, V>> kept = new ArrayList<>();
+        RuntimeException failure = null;
+
+        CacheEntry<I, V> entry;
+        while ((entry = this.expiryQueue.peek()) != null) {
+            // The queue is ordered by cache time, so nothing after this entry is expired either
+            if (!entry.isExpired(this.cacheTimeNanos, now)) {
+                break;
+            }
+
+            this.expiryQueue.poll();
+            I identifier = entry.value().getIdentifier();
+            // Skip entries that were replaced or removed in the meantime
+            if (this.entries.get(identifier) != entry) {
+                continue;
+            }
+
+            try {
+                if (!writeBack(entry.value(), RemovalCause.EXPIRED)) {
+                    kept.add(entry);
+                    continue;
+                }
+            } catch (RuntimeException ex) {
+                kept.add(entry);
+                failure = addFailure(failure, ex);
                 continue;
             }
 
-            Instant expireAt = cacheTime.plusMillis(this.cacheTimeUnit.toMillis(this.cacheTime));
-            // If the expireAt time is not before the current time, we don't need to clean the cache
-            if (expireAt.isAfter(Instant.now())) {
+            // Only remove the entry if it hasn't been replaced or removed while it was written
+            if (removeEntry(identifier, entry) == null) {
                 continue;
             }
 
-            // Remove the cache value
-            remove(identifier);
+            notifyRemoval(entry.value(), RemovalCause.EXPIRED);
+        }
+
+        // Values that couldn't be written stay cached for another cache time
+        for (CacheEntry<I, V> keptEntry : kept) {
+            CacheEntry<I, V> renewed = new CacheEntry<>(keptEntry.value(), now);
+            if (this.entries.replace(keptEntry.value().getIdentifier(), keptEntry, renewed)) {
+                this.expiryQueue.offer(renewed);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
         }
     }
 
+    /**
+     * Set how long identifiers that don't exist in the database are remembered, negative caching is disabled
+     * by default.
+     * <p>
+     * Saving a value forgets that its identifier was missing, so keep this short when other processes can
+     * create values in the same database.
+     *
+     * @param missingCacheTime     The time a missing identifier is remembered, or a negative number to disable it
+     * @param missingCacheTimeUnit The {@link TimeUnit} of the time
+     */
+    public void setMissingCacheTime(long missingCacheTime, TimeUnit missingCacheTimeUnit) {
+        this.missingTimeNanos = missingCacheTime < 0L ? -1L : missingCacheTimeUnit.toNanos(missingCacheTime);
+        this.missingIdentifiers.clear();
+    }
+
+    /**
+     * Check if an identifier is remembered as missing from the database.
+     *
+     * @param identifier The identifier you want to check
+     * @return If the identifier is known to be missing
+     */
+    public boolean isMissing(I identifier) {
+        Long expiresAt = this.missingIdentifiers.get(identifier);
+        if (expiresAt == null) {
+            return false;
+        }
+
+        if (expiresAt - System.nanoTime() > 0L) {
+            return true;
+        }
+
+        this.missingIdentifiers.remove(identifier, expiresAt);
+        return false;
+    }
+
+    /**
+     * Get the current missing stamp, take it before looking up an identifier in the database and pass it to
+     * {@link #addMissing(Object, long)} if the identifier wasn't found.
+     *
+     * @return The missing stamp
+     */
+    public long getMissingStamp() {
+        return this.missingStamp.get();
+    }
+
+    /**
+     * Remember that an identifier is missing from the database.
+     * <p>
+     * The identifier isn't remembered if any identifier stopped being missing since the stamp was taken,
+     * because a value might have been saved while the lookup ran.
+     *
+     * @param identifier The identifier that wasn't found
+     * @param stamp      The stamp that was taken before the lookup
+     * @return If the identifier is remembered
+     */
+    public boolean addMissing(I identifier, long stamp) {
+        long missingTimeNanos = this.missingTimeNanos;
+        if (missingTimeNanos < 0L) {
+            return false;
+        }
+
+        this.missingIdentifiers.put(identifier, System.nanoTime() + missingTimeNanos);
+
+        // Undo it if a value was saved in the meantime, the save might have missed our entry
+        if (this.missingStamp.get() != stamp) {
+            this.missingIdentifiers.remove(identifier);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Forget that an identifier is missing from the database, call this when a value with the identifier is saved.
+     *
+     * @param identifier The identifier of the value
+     */
+    public void removeMissing(I identifier) {
+        if (this.missingTimeNanos < 0L) {
+            return;
+        }
+
+        this.missingStamp.incrementAndGet();
+        this.missingIdentifiers.remove(identifier);
+    }
+
+    /**
+     * Forget all identifiers that are remembered as missing.
+     */
+    public void clearMissing() {
+        this.missingStamp.incrementAndGet();
+        this.missingIdentifiers.clear();
+    }
+
+    /**
+     * Bound the cache to a maximum amount of values.
+     *
+     * @param maximumSize The maximum amount of values, or a negative number to remove the bound
+     */
+    public void setMaximumSize(long maximumSize) {
+        setMaximumWeight(maximumSize, value -> 1);
+    }
+
+    /**
+     * Bound the cache to a maximum total weight.
+     *
+     * @param maximumWeight The maximum total weight, or a negative number to remove the bound
+     * @param weigher       The {@link Weigher} that calculates the weight of a value
+     */
+    public void setMaximumWeight(long maximumWeight, Weigher<? super V> weigher) {
+        List<CacheEntry<I, V>> evicted = new ArrayList<>();
+
+        this.policyLock.lock();
+        try {
+            if (maximumWeight < 0L) {
+                this.sizePolicy = null;
+                this.weigher = null;
+                return;
+            }
+
+            // Publish the bound before tracking the values, so values added without the lock are never missed
+            SizePolicy<I> sizePolicy = new SizePolicy<>(maximumWeight);
+            this.weigher = weigher;
+            this.sizePolicy = sizePolicy;
+
+            for (CacheEntry<I, V> entry : this.entries.values()) {
+                sizePolicy.recordAdd(entry.value().getIdentifier(), weigher.weigh(entry.value()));
+            }
+
+            // The existing values might already exceed the new bound
+            evictBounded(sizePolicy, evicted);
+        } finally {
+            this.policyLock.unlock();
+        }
+
+        removeEvicted(evicted);
+    }
+
+    /**
+     * Set the {@link EvictionWriter} that writes back values before they expire or are evicted.
+     *
+     * @param evictionWriter The {@link EvictionWriter}, or null to remove values without writing them
+     */
+    public void setEvictionWriter(@Nullable EvictionWriter<I, V> evictionWriter) {
+        this.evictionWriter = evictionWriter;
+    }
+
+    /**
+     * Add a secondary index that looks up values by a key extracted from them.
+     *
+     * @param name         The name of the index
+     * @param keyExtractor The function that extracts the key of a value, values with a null key aren't indexed
+     * @param unique       If the index holds a single value per key
+     * @param <K>          The key type
+     * @return The {@link CacheIndex}
+     */
+    public <K> CacheIndex<K, I, V> addIndex(String name, Function<? super V, ? extends K> keyExtractor, boolean unique) {
+        if (getIndex(name) != null) {
+            throw new IllegalArgumentException("An index named " + name + " already exists.");
+        }
+
+        CacheIndex<K, I, V> index = new CacheIndex<>(name, keyExtractor, unique, this::getEntryValue);
+        this.indexes.add(index);
+
+        // Index the values that are already cached
+        for (I identifier : this.entries.keySet()) {
+            index.refresh(identifier);
+        }
+
+        return index;
+    }
+
+    /**
+     * Add a secondary index that looks up values by the value of a field.
+     *
+     * @param name      The name of the index
+     * @param fieldName The name of the field, it can be declared in a superclass
+     * @param unique    If the index holds a single value per key
+     * @return The {@link CacheIndex}
+     */
+    public CacheIndex<Object, I, V> addIndex(String name, String fieldName, boolean unique) {
+        return addIndex(name, CacheIndex.fieldExtractor(fieldName), unique);
+    }
+
+    /**
+     * Get a secondary index by its name.
+     *
+     * @param name The name of the index
+     * @param <K>  The key type
+     * @return The {@link CacheIndex}, or null if there's no index with the name
+     */
+    @SuppressWarnings("unchecked")
+    public <K> @Nullable CacheIndex<K, I, V> getIndex(String name) {
+        for (CacheIndex<?, I, V> index : this.indexes) {
+            if (index.getName().equals(name)) {
+                return (CacheIndex<K, I, V>) index;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove a secondary index.
+     *
+     * @param name The name of the index
+     */
+    public void removeIndex(String name) {
+        this.indexes.removeIf(index -> index.getName().equals(name));
+    }
+
+    /**
+     * Update the indexes of a cached value, call this after changing a field that is indexed.
+     *
+     * @param identifier The identifier of the value
+     */
+    public void reindex(I identifier) {
+        refreshIndexes(identifier);
+    }
+
+    /**
+     * Add a {@link RemovalListener} that gets notified when a value is removed from the cache.
+     *
+     * @param removalListener The listener you want to add
+     */
+    public void addRemovalListener(RemovalListener<I, V> removalListener) {
+        this.removalListeners.add(removalListener);
+    }
+
+    /**
+     * Add an entry to a bounded cache and evict values if the cache became too heavy.
+     * <p>
+     * The bound is read again under the policy lock, if it was removed in the meantime the entry is added
+     * like in an unbounded cache.
+     *
+     * @param entry The entry you want to add
+     */
+    private void addBounded(CacheEntry<I, V> entry) {
+        List<CacheEntry<I, V>> evicted = new ArrayList<>();
+
+        this.policyLock.lock();
+        try {
+            I identifier = entry.value().getIdentifier();
+            this.entries.put(identifier, entry);
+
+            SizePolicy<I> sizePolicy = this.sizePolicy;
+            Weigher<? super V> weigher = this.weigher;
+            if (sizePolicy == null || weigher == null) {
+                return;
+            }
+
+            sizePolicy.recordAdd(identifier, weigher.weigh(entry.value()));
+            evictBounded(sizePolicy, evicted);
+        } finally {
+            this.policyLock.unlock();
+        }
+
+        removeEvicted(evicted);
+    }
+
+    /**
+     * Pick the entries the {@link SizePolicy} evicts, the policy lock must be held.
+     * <p>
+     * The entries stay in the cache until they're written back, see {@link #removeEvicted(List)}.
+     *
+     * @param sizePolicy The {@link SizePolicy} of the cache
+     * @param evicted    The list the evicted entries are added to
+     */
+    private void evictBounded(SizePolicy<I> sizePolicy, List<CacheEntry<I, V>> evicted) {
+        for (I identifier : sizePolicy.evict()) {
+            CacheEntry<I, V> entry = this.entries.get(identifier);
+            if (entry == null) {
+                continue;
+            }
+
+            evicted.add(entry);
+        }
+    }
+
+    /**
+     * Write back and remove the entries that were picked by {@link #evictBounded(SizePolicy, List)}, without
+     * holding the policy lock.
+     *
+     * @param evicted The evicted entries
+     */
+    private void removeEvicted(List<CacheEntry<I, V>> evicted) {
+        RuntimeException failure = null;
+        for (CacheEntry<I, V> entry : evicted) {
+            I identifier = entry.value().getIdentifier();
+
+            boolean removable;
+            try {
+                removable = writeBack(entry.value(), RemovalCause.SIZE);
+            } catch (RuntimeException ex) {
+                removable = false;
+                failure = addFailure(failure, ex);
+            }
+
+            if (!removable) {
+                readmit(entry);
+                continue;
+            }
+
+            // The policy already forgot the entry, a value that replaced it in the meantime is tracked again
+            if (!this.entries.remove(identifier, entry)) {
+                continue;
+            }
+
+            notifyRemoval(entry.value(), RemovalCause.SIZE);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Track an evicted entry in the {@link SizePolicy} again, because it couldn't be written back.
+     *
+     * @param entry The entry
+     */
+    private void readmit(CacheEntry<I, V> entry) {
+        this.policyLock.lock();
+        try {
+            SizePolicy<I> sizePolicy = this.sizePolicy;
+            I identifier = entry.value().getIdentifier();
+            if (sizePolicy != null && this.entries.get(identifier) == entry) {
+                sizePolicy.recordAdd(identifier, this.weigher.weigh(entry.value()));
+            }
+        } finally {
+            this.policyLock.unlock();
+        }
+    }
+
+    /**
+     * Let the {@link EvictionWriter} write back a value that is about to be removed.
+     *
+     * @param value The value
+     * @param cause The reason the value is removed
+     * @return If the value may be removed
+     */
+    private boolean writeBack(V value, RemovalCause cause) {
+        EvictionWriter<I, V> evictionWriter = this.evictionWriter;
+        return evictionWriter == null || evictionWriter.write(value, cause);
+    }
+
+    /**
+     * Collect a failure of a write back, so the other values are still processed before it's rethrown.
+     *
+     * @param failure The failure so far, or null
+     * @param ex      The new failure
+     * @return The failure to rethrow
+     */
+    private static RuntimeException addFailure(@Nullable RuntimeException failure, RuntimeException ex) {
+        if (failure == null) {
+            return ex;
+        }
+
+        failure.addSuppressed(ex);
+        return failure;
+    }
+
+    /**
+     * Remove an entry from the cache and the {@link SizePolicy}.
+     *
+     * @param identifier The identifier of the entry
+     * @param expected   The entry that should be removed, or null to remove any entry
+     * @return The removed entry, or null if nothing was removed
+     */
+    private CacheEntry<I, V> removeEntry(I identifier, CacheEntry<I, V> expected) {
+        if (this.sizePolicy == null) {
+            CacheEntry<I, V> removed;
+            if (expected == null) {
+                removed = this.entries.remove(identifier);
+            } else {
+                removed = this.entries.remove(identifier, expected) ? expected : null;
+            }
+
+            // A bound that was set while the value was removed might still track it
+            if (removed != null && this.sizePolicy != null) {
+                forgetInPolicy(identifier);
+            }
+
+            return removed;
+        }
+
+        this.policyLock.lock();
+        try {
+            SizePolicy<I> sizePolicy = this.sizePolicy;
+            CacheEntry<I, V> removed;
+            if (expected == null) {
+                removed = this.entries.remove(identifier);
+            } else {
+                removed = this.entries.remove(identifier, expected) ? expected : null;
+            }
+
+            if (removed != null && sizePolicy != null) {
+                sizePolicy.recordRemove(identifier);
+            }
+
+            return removed;
+        } finally {
+            this.policyLock.unlock();
+        }
+    }
+
+    /**
+     * Make the {@link SizePolicy} forget an identifier that is no longer cached.
+     *
+     * @param identifier The identifier
+     */
+    private void forgetInPolicy(I identifier) {
+        this.policyLock.lock();
+        try {
+            SizePolicy<I> sizePolicy = this.sizePolicy;
+            if (sizePolicy != null && !this.entries.containsKey(identifier)) {
+                sizePolicy.recordRemove(identifier);
+            }
+        } finally {
+            this.policyLock.unlock();
+        }
+    }
+
+    /**
+     * Notify all the {@link RemovalListener}s about a removed value.
+     *
+     * @param value The value that was removed
+     * @param cause The reason the value was removed
+     */
+    private void notifyRemoval(V value, RemovalCause cause) {
+        this.stats.recordRemoval(cause);
+
+        // Drop the value from the indexes before the listeners see it
+        refreshIndexes(value.getIdentifier());
+
+        for (RemovalListener<I, V> removalListener : this.removalListeners) {
+            try {
+                removalListener.onRemoval(value, cause);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Make all indexes match the value that is currently cached with an identifier.
+     *
+     * @param identifier The identifier of the value
+     */
+    private void refreshIndexes(I identifier) {
+        for (CacheIndex<?, I, V> index : this.indexes) {
+            index.refresh(identifier);
+        }
+    }
+
+    /**
+     * Get the value of an entry without recording the access.
+     *
+     * @param identifier The identifier of the value
+     * @return The value, or null if it isn't cached
+     */
+    private @Nullable V getEntryValue(I identifier) {
+        CacheEntry<I, V> entry = this.entries.get(identifier);
+        return entry == null ? null : entry.value();
+    }
+
     @Override
     public String toString() {
         return "ServiceCache{" +
-                "cacheValues=" + cacheValues +
-                ", cacheTimes=" + cacheTimes +
+                "entries=" + entries +
                 ", cacheTime=" + cacheTime +
                 ", cacheTimeUnit=" + cacheTimeUnit +
                 '}';
     }
+
+    /**
+     * A live view over the values of the cache entries.
+     */
+    private class ValuesView extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            Iterator<CacheEntry<I, V>> iterator = entries.values().iterator();
+
+            return new Iterator<>() {
+                private CacheEntry<I, V> current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    this.current = iterator.next();
+                    return this.current.value();
+                }
+
+                @Override
+                public void remove() {
+                    if (this.current == null) {
+                        throw new IllegalStateException();
+                    }
+
+                    ServiceCache.this.remove(this.current.value().getIdentifier());
+                    this.current = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+    }
 }
@@ -0,0 +1,191 @@
+package dev.vertcode.vcore.storage.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A W-TinyLFU eviction policy used by a size or weight bounded {@link ServiceCache}.
+ * <p>
+ * New identifiers enter a small LRU admission window. Once they fall out of the window they become a
+ * candidate for the main space, which is a segmented LRU (probation and protected). When the cache is
+ * too heavy the candidate competes with the probation victim and the one with the lowest estimated
+ * frequency is evicted, so a burst of one-off loads can't flush out the hot values.
+ * <p>
+ * This class is not thread-safe, the {@link ServiceCache} guards it with its policy lock.
+ *
+ * @param <I> The identifier type
+ */
+final class SizePolicy<I> {
+
+    private static final double WINDOW_PERCENTAGE = 0.01D;
+    private static final double PROTECTED_PERCENTAGE = 0.8D;
+
+    private final LinkedHashMap<I, Integer> window = new LinkedHashMap<>(16, 0.75F, true);
+    private final LinkedHashMap<I, Integer> probation = new LinkedHashMap<>(16, 0.75F, true);
+    private final LinkedHashMap<I, Integer> protectedSegment = new LinkedHashMap<>(16, 0.75F, true);
+    private final FrequencySketch<I> sketch;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    SizePolicy(long maximum) {
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1L, (long) (maximum * WINDOW_PERCENTAGE));
+        this.protectedMaximum = (long) ((maximum - this.windowMaximum) * PROTECTED_PERCENTAGE);
+        this.sketch = new FrequencySketch<>(maximum);
+    }
+
+    /**
+     * Record an access to an identifier.
+     *
+     * @param identifier The identifier that was accessed
+     */
+    void recordAccess(I identifier) {
+        this.sketch.increment(identifier);
+
+        // An access moves the identifier to the most recently used position of its segment
+        if (this.window.get(identifier) != null || this.protectedSegment.get(identifier) != null) {
+            return;
+        }
+
+        // A second access on probation promotes the identifier to the protected segment
+        Integer weight = this.probation.remove(identifier);
+        if (weight == null) {
+            return;
+        }
+
+        this.probationWeight -= weight;
+        this.protectedSegment.put(identifier, weight);
+        this.protectedWeight += weight;
+
+        // Demote the least recently used protected identifiers if the segment is full
+        Iterator<Map.Entry<I, Integer>> iterator = this.protectedSegment.entrySet().iterator();
+        while (this.protectedWeight > this.protectedMaximum && iterator.hasNext()) {
+            Map.Entry<I, Integer> entry = iterator.next();
+            iterator.remove();
+
+            this.protectedWeight -= entry.getValue();
+            this.probation.put(entry.getKey(), entry.getValue());
+            this.probationWeight += entry.getValue();
+        }
+    }
+
+    /**
+     * Record that an identifier was added or replaced.
+     *
+     * @param identifier The identifier that was added
+     * @param weight     The weight of the new value
+     */
+    void recordAdd(I identifier, int weight) {
+        Integer previousWeight;
+        if ((previousWeight = this.window.get(identifier)) != null) {
+            this.window.put(identifier, weight);
+            this.windowWeight += weight - previousWeight;
+        } else if ((previousWeight = this.probation.get(identifier)) != null) {
+            this.probation.put(identifier, weight);
+            this.probationWeight += weight - previousWeight;
+        } else if ((previousWeight = this.protectedSegment.get(identifier)) != null) {
+            this.protectedSegment.put(identifier, weight);
+            this.protectedWeight += weight - previousWeight;
+        } else {
+            // A new identifier always starts in the admission window
+            this.sketch.increment(identifier);
+            this.window.put(identifier, weight);
+            this.windowWeight += weight;
+            return;
+        }
+
+        recordAccess(identifier);
+    }
+
+    /**
+     * Record that an identifier was removed.
+     *
+     * @param identifier The identifier that was removed
+     */
+    void recordRemove(I identifier) {
+        Integer weight;
+        if ((weight = this.window.remove(identifier)) != null) {
+            this.windowWeight -= weight;
+        } else if ((weight = this.probation.remove(identifier)) != null) {
+            this.probationWeight -= weight;
+        } else if ((weight = this.protectedSegment.remove(identifier)) != null) {
+            this.protectedWeight -= weight;
+        }
+    }
+
+    /**
+     * Evict identifiers until the cache is within its maximum again.
+     *
+     * @return The identifiers that were evicted
+     */
+    List<I> evict() {
+        // Move the overflow of the admission window to probation, these are the admission candidates
+        List<I> candidates = new ArrayList<>();
+        Iterator<Map.Entry<I, Integer>> windowIterator = this.window.entrySet().iterator();
+        while (this.windowWeight > this.windowMaximum && windowIterator.hasNext()) {
+            Map.Entry<I, Integer> entry = windowIterator.next();
+            windowIterator.remove();
+
+            this.windowWeight -= entry.getValue();
+            this.probation.put(entry.getKey(), entry.getValue());
+            this.probationWeight += entry.getValue();
+            candidates.add(entry.getKey());
+        }
+
+        List<I> evicted = new ArrayList<>();
+        while (getWeight() > this.maximum) {
+            I victim = firstKey();
+            if (victim == null) {
+                break;
+            }
+
+            // Let the newest candidate compete with the victim, the least frequently used one loses
+            I candidate = candidates.isEmpty() ? null : candidates.get(candidates.size() - 1);
+            I loser = victim;
+            if (candidate != null && !candidate.equals(victim)
+                    && this.sketch.frequency(candidate) <= this.sketch.frequency(victim)) {
+                loser = candidate;
+            }
+
+            candidates.remove(loser);
+            recordRemove(loser);
+            evicted.add(loser);
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Get the total weight of all the tracked identifiers.
+     *
+     * @return The total weight
+     */
+    long getWeight() {
+        return this.windowWeight + this.probationWeight + this.protectedWeight;
+    }
+
+    /**
+     * Get the identifier that should be evicted first.
+     *
+     * @return The eviction victim, or null if nothing is tracked
+     */
+    private I firstKey() {
+        for (LinkedHashMap<I, Integer> segment : List.of(this.probation, this.protectedSegment, this.window)) {
+            if (!segment.isEmpty()) {
+                return segment.keySet().iterator().next();
+            }
+        }
+
+        return null;
+    }
+
+}
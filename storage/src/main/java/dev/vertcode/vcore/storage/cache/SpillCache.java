@@ -0,0 +1,356 @@
+package dev.vertcode.vcore.storage.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A second cache tier that holds encoded values off-heap, between the {@link ServiceCache} and the database.
+ * <p>
+ * Values are appended to direct {@link ByteBuffer} slabs, optionally compressed. When all slabs are full the
+ * oldest slab is recycled and the values in it are dropped, so the tier never grows beyond its maximum size
+ * and needs no per value bookkeeping to free space. Replacing or removing a value leaves its old bytes behind
+ * until its slab is recycled.
+ * <p>
+ * Reads copy the bytes out of the slab under a read lock, writes are serialized.
+ * <p>
+ * A value that is spilled after it was written to the database can race with a removal of the same
+ * identifier, for example when the value is deleted right after it was written. Take a {@link #stamp(Object)}
+ * before the value can go stale and pass it to {@link #put(Object, byte[], long)}, the value isn't added if
+ * the identifier was removed since. The stamps are striped, so a removal of another identifier can make a
+ * put fail as well, which only costs a database read later.
+ *
+ * @param <I> The identifier type
+ */
+public class SpillCache<I> {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int STAMP_STRIPES = 1024;
+    private static final long NO_STAMP = -1L;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final ConcurrentMap<I, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private final StampedLock lock = new StampedLock();
+    private final ByteBuffer[] slabs;
+    private final int slabSize;
+    private final boolean compress;
+
+    private int activeSlab = 0;
+
+    /**
+     * Create a spill cache.
+     *
+     * @param maximumSize The maximum amount of off-heap bytes, rounded down to whole slabs
+     * @param slabSize    The size of a single slab, values that don't fit in a slab aren't spilled
+     * @param compress    If the values should be compressed
+     */
+    public SpillCache(long maximumSize, int slabSize, boolean compress) {
+        if (slabSize < 1) {
+            throw new IllegalArgumentException("The slab size must be at least 1.");
+        }
+
+        if (maximumSize < slabSize) {
+            throw new IllegalArgumentException("The maximum size must be at least the slab size.");
+        }
+
+        this.slabs = new ByteBuffer[(int) Math.min(Integer.MAX_VALUE, maximumSize / slabSize)];
+        this.slabSize = slabSize;
+        this.compress = compress;
+    }
+
+    /**
+     * Add an encoded value.
+     *
+     * @param identifier The identifier of the value
+     * @param bytes      The encoded value
+     * @return If the value was added, false if it's too big for a slab
+     */
+    public boolean put(I identifier, byte[] bytes) {
+        return put(identifier, bytes, NO_STAMP);
+    }
+
+    /**
+     * Add an encoded value, unless the identifier was removed after the stamp was taken.
+     *
+     * @param identifier The identifier of the value
+     * @param bytes      The encoded value
+     * @param stamp      The {@link #stamp(Object)} of the identifier from before the value could go stale
+     * @return If the value was added, false if it's too big for a slab or the identifier was removed
+     */
+    public boolean put(I identifier, byte[] bytes, long stamp) {
+        if (stamp != NO_STAMP && this.stamps.get(getStripe(identifier)) != stamp) {
+            return false;
+        }
+
+        int rawLength = -1;
+        byte[] stored = bytes;
+        if (this.compress) {
+            byte[] compressed = compress(bytes);
+            if (compressed != null) {
+                rawLength = bytes.length;
+                stored = compressed;
+            }
+        }
+
+        if (stored.length > this.slabSize) {
+            remove(identifier);
+            return false;
+        }
+
+        long lockStamp = this.lock.writeLock();
+        try {
+            ByteBuffer slab = getWritableSlab(stored.length);
+            int offset = slab.position();
+            slab.put(stored);
+
+            Slot slot = new Slot(this.activeSlab, offset, stored.length, rawLength);
+            this.slots.put(identifier, slot);
+
+            // A removal that ran while the value was added didn't see it, so drop it here
+            if (stamp != NO_STAMP && this.stamps.get(getStripe(identifier)) != stamp) {
+                this.slots.remove(identifier, slot);
+                return false;
+            }
+
+            return true;
+        } finally {
+            this.lock.unlockWrite(lockStamp);
+        }
+    }
+
+    /**
+     * Get an encoded value.
+     *
+     * @param identifier The identifier of the value
+     * @return The encoded value, or null if it isn't spilled
+     */
+    public byte @Nullable [] get(I identifier) {
+        Slot slot = this.slots.get(identifier);
+        return slot == null ? null : read(identifier, slot);
+    }
+
+    /**
+     * Get an encoded value and remove it.
+     *
+     * @param identifier The identifier of the value
+     * @return The encoded value, or null if it isn't spilled
+     */
+    public byte @Nullable [] take(I identifier) {
+        Slot slot = this.slots.get(identifier);
+        if (slot == null) {
+            return null;
+        }
+
+        byte[] bytes = read(identifier, slot);
+
+        // Only one caller takes the value, and a value that was replaced in the meantime is kept
+        if (!this.slots.remove(identifier, slot)) {
+            return null;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param identifier The identifier of the value
+     */
+    public void remove(I identifier) {
+        this.stamps.incrementAndGet(getStripe(identifier));
+        this.slots.remove(identifier);
+    }
+
+    /**
+     * Get the stamp of an identifier, it changes every time the identifier is removed.
+     *
+     * @param identifier The identifier
+     * @return The stamp
+     */
+    public long stamp(I identifier) {
+        return this.stamps.get(getStripe(identifier));
+    }
+
+    /**
+     * Check if a value is spilled.
+     *
+     * @param identifier The identifier of the value
+     * @return If the value is spilled
+     */
+    public boolean contains(I identifier) {
+        return this.slots.containsKey(identifier);
+    }
+
+    /**
+     * Get the amount of spilled values.
+     *
+     * @return The amount of spilled values
+     */
+    public int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * Get the maximum amount of off-heap bytes the spill cache uses.
+     *
+     * @return The maximum size
+     */
+    public long getMaximumSize() {
+        return (long) this.slabs.length * this.slabSize;
+    }
+
+    /**
+     * Remove all values and release the slabs.
+     */
+    public void clear() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            this.stamps.incrementAndGet(i);
+        }
+
+        long stamp = this.lock.writeLock();
+        try {
+            this.slots.clear();
+            Arrays.fill(this.slabs, null);
+            this.activeSlab = 0;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Read the bytes of a slot.
+     *
+     * @param identifier The identifier of the value
+     * @param slot       The slot of the value
+     * @return The encoded value, or null if the slot was dropped
+     */
+    private byte @Nullable [] read(I identifier, Slot slot) {
+        byte[] stored = new byte[slot.length()];
+        long stamp = this.lock.readLock();
+        try {
+            // The slab might have been recycled since we looked up the slot
+            if (this.slots.get(identifier) != slot) {
+                return null;
+            }
+
+            this.slabs[slot.slab()].get(slot.offset(), stored);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+
+        if (slot.rawLength() < 0) {
+            return stored;
+        }
+
+        return decompress(stored, slot.rawLength());
+    }
+
+    /**
+     * Get the slab the next value is written to, moving to the next slab if the active one is full. The write
+     * lock must be held.
+     *
+     * @param length The length of the value
+     * @return The slab, positioned where the value should be written
+     */
+    private ByteBuffer getWritableSlab(int length) {
+        ByteBuffer slab = this.slabs[this.activeSlab];
+        if (slab != null && slab.remaining() >= length) {
+            return slab;
+        }
+
+        if (slab != null) {
+            this.activeSlab = (this.activeSlab + 1) % this.slabs.length;
+            slab = this.slabs[this.activeSlab];
+        }
+
+        if (slab == null) {
+            slab = ByteBuffer.allocateDirect(this.slabSize);
+            this.slabs[this.activeSlab] = slab;
+            return slab;
+        }
+
+        // Recycle the oldest slab, dropping the values that are still in it
+        int recycled = this.activeSlab;
+        this.slots.values().removeIf(slot -> slot.slab() == recycled);
+        slab.clear();
+        return slab;
+    }
+
+    /**
+     * Get the stamp stripe of an identifier.
+     *
+     * @param identifier The identifier
+     * @return The index of the stripe
+     */
+    private int getStripe(I identifier) {
+        int hash = identifier.hashCode();
+        return (hash ^ (hash >>> 16)) & (STAMP_STRIPES - 1);
+    }
+
+    /**
+     * Compress a value.
+     *
+     * @param bytes The value
+     * @return The compressed value, or null if compressing doesn't make it smaller
+     */
+    private static byte @Nullable [] compress(byte[] bytes) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        byte[] buffer = new byte[bytes.length];
+        int length = deflater.deflate(buffer);
+        if (!deflater.finished() || length >= bytes.length) {
+            return null;
+        }
+
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Decompress a value.
+     *
+     * @param compressed The compressed value
+     * @param rawLength  The length of the value
+     * @return The value, or null if it couldn't be decompressed
+     */
+    private static byte @Nullable [] decompress(byte[] compressed, int rawLength) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        byte[] bytes = new byte[rawLength];
+        try {
+            int length = inflater.inflate(bytes);
+            return length == rawLength ? bytes : null;
+        } catch (DataFormatException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * The location of a value in the slabs.
+     *
+     * @param slab      The index of the slab
+     * @param offset    The offset in the slab
+     * @param length    The amount of stored bytes
+     * @param rawLength The length of the value before it was compressed, or -1 if it isn't compressed
+     */
+    private record Slot(int slab, int offset, int length, int rawLength) {
+    }
+
+}
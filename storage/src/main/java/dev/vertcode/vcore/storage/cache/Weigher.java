@@ -0,0 +1,19 @@
+package dev.vertcode.vcore.storage.cache;
+
+/**
+ * Calculates the weight of a cached value, used by a weight bounded {@link ServiceCache}.
+ *
+ * @param <V> The value type
+ */
+@FunctionalInterface
+public interface Weigher<V> {
+
+    /**
+     * Get the weight of a value.
+     *
+     * @param value The value you want the weight of
+     * @return The weight of the value, never negative
+     */
+    int weigh(V value);
+
+}
@@ -0,0 +1,93 @@
+package dev.vertcode.vcore.storage.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values written by a {@link BinaryWriter} from a {@link ByteBuffer}.
+ */
+final class BinaryReader {
+
+    private final ByteBuffer buffer;
+
+    BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    byte readByte() {
+        return this.buffer.get();
+    }
+
+    int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = this.buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalStateException("Malformed varint.");
+    }
+
+    long readVarLong() {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = this.buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalStateException("Malformed varlong.");
+    }
+
+    int readZigZagInt() {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readZigZagLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    int readInt() {
+        return this.buffer.getInt();
+    }
+
+    long readLong() {
+        return this.buffer.getLong();
+    }
+
+    /**
+     * Read a length-prefixed byte array.
+     *
+     * @return The bytes
+     */
+    byte[] readBytes() {
+        byte[] bytes = new byte[readVarInt()];
+        this.buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read a length-prefixed UTF-8 string.
+     *
+     * @return The string
+     */
+    String readString() {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skip a length-prefixed byte array or string.
+     */
+    void skipBytes() {
+        int length = readVarInt();
+        this.buffer.position(this.buffer.position() + length);
+    }
+
+}
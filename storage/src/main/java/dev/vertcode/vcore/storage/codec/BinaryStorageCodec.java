@@ -0,0 +1,323 @@
+package dev.vertcode.vcore.storage.codec;
+
+import dev.vertcode.vcore.storage.util.StorageUtil;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A compact binary {@link StorageCodec}.
+ * <p>
+ * Values are written field by field with reflection, using the same fields and names Gson would use. Every
+ * value starts with a one byte tag, integers are zigzag encoded varints, strings are length-prefixed UTF-8
+ * and a {@link UUID} is written as two longs. Fields are written with their name, so fields can be added or
+ * removed without breaking existing data, unknown fields are skipped when reading.
+ * <p>
+ * Types of the JDK that aren't handled natively, like the {@code java.time} classes, are written as JSON with
+ * {@link StorageUtil#getGson()}, so the type adapters registered there still apply.
+ */
+public class BinaryStorageCodec implements StorageCodec {
+
+    public static final BinaryStorageCodec INSTANCE = new BinaryStorageCodec();
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_CHAR = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_UUID = 9;
+    private static final byte TAG_BYTES = 10;
+    private static final byte TAG_LIST = 11;
+    private static final byte TAG_MAP = 12;
+    private static final byte TAG_OBJECT = 13;
+    private static final byte TAG_JSON = 14;
+
+    @Override
+    public byte[] encode(Object value) {
+        BinaryWriter writer = new BinaryWriter();
+        write(writer, value);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return decode(ByteBuffer.wrap(bytes), type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(ByteBuffer buffer, Class<T> type) {
+        return (T) read(new BinaryReader(buffer.duplicate().order(ByteOrder.BIG_ENDIAN)), type);
+    }
+
+    @Override
+    public boolean isJson() {
+        return false;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "bin";
+    }
+
+    /**
+     * Write a tagged value.
+     *
+     * @param writer The writer
+     * @param value  The value you want to write
+     */
+    private void write(BinaryWriter writer, Object value) {
+        if (value == null) {
+            writer.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean bool) {
+            writer.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeByte(TAG_INT);
+            writer.writeZigZagInt(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            writer.writeByte(TAG_LONG);
+            writer.writeZigZagLong(number);
+        } else if (value instanceof Float number) {
+            writer.writeByte(TAG_FLOAT);
+            writer.writeInt(Float.floatToIntBits(number));
+        } else if (value instanceof Double number) {
+            writer.writeByte(TAG_DOUBLE);
+            writer.writeLong(Double.doubleToLongBits(number));
+        } else if (value instanceof Character character) {
+            writer.writeByte(TAG_CHAR);
+            writer.writeVarInt(character);
+        } else if (value instanceof String string) {
+            writer.writeByte(TAG_STRING);
+            writer.writeString(string);
+        } else if (value instanceof UUID uuid) {
+            writer.writeByte(TAG_UUID);
+            writer.writeLong(uuid.getMostSignificantBits());
+            writer.writeLong(uuid.getLeastSignificantBits());
+        } else if (value instanceof Enum<?> constant) {
+            writer.writeByte(TAG_STRING);
+            writer.writeString(constant.name());
+        } else if (value instanceof byte[] bytes) {
+            writer.writeByte(TAG_BYTES);
+            writer.writeBytes(bytes);
+        } else if (value instanceof Collection<?> collection) {
+            // Copy the elements first, so a concurrent change can't make the size wrong
+            Object[] elements = collection.toArray();
+            writer.writeByte(TAG_LIST);
+            writer.writeVarInt(elements.length);
+            for (Object element : elements) {
+                write(writer, element);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            writer.writeByte(TAG_LIST);
+            writer.writeVarInt(length);
+            for (int i = 0; i < length; i++) {
+                write(writer, Array.get(value, i));
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            Object[] entries = map.entrySet().toArray();
+            writer.writeByte(TAG_MAP);
+            writer.writeVarInt(entries.length);
+            for (Object entry : entries) {
+                write(writer, ((Map.Entry<?, ?>) entry).getKey());
+                write(writer, ((Map.Entry<?, ?>) entry).getValue());
+            }
+        } else if (TypeSupport.isJdkType(value.getClass())) {
+            writer.writeByte(TAG_JSON);
+            writer.writeString(StorageUtil.getGson().toJson(value));
+        } else {
+            writeObject(writer, value);
+        }
+    }
+
+    /**
+     * Write the fields of an object.
+     *
+     * @param writer The writer
+     * @param value  The object you want to write
+     */
+    private void writeObject(BinaryWriter writer, Object value) {
+        ClassLayout layout = ClassLayout.of(value.getClass());
+
+        writer.writeByte(TAG_OBJECT);
+        writer.writeVarInt(layout.fields().size());
+        for (FieldInfo field : layout.fields()) {
+            writer.writeString(field.name());
+            write(writer, ClassLayout.getField(value, field));
+        }
+    }
+
+    /**
+     * Read a tagged value.
+     *
+     * @param reader The reader
+     * @param type   The declared type of the value
+     * @return The value
+     */
+    private Object read(BinaryReader reader, Type type) {
+        Class<?> rawType = TypeSupport.getRawType(type);
+
+        byte tag = reader.readByte();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_FALSE -> Boolean.FALSE;
+            case TAG_TRUE -> Boolean.TRUE;
+            case TAG_INT -> TypeSupport.convertNumber(reader.readZigZagInt(), rawType);
+            case TAG_LONG -> TypeSupport.convertNumber(reader.readZigZagLong(), rawType);
+            case TAG_FLOAT -> TypeSupport.convertNumber(Float.intBitsToFloat(reader.readInt()), rawType);
+            case TAG_DOUBLE -> TypeSupport.convertNumber(Double.longBitsToDouble(reader.readLong()), rawType);
+            case TAG_CHAR -> (char) reader.readVarInt();
+            case TAG_STRING -> TypeSupport.convertString(reader.readString(), rawType);
+            case TAG_UUID -> new UUID(reader.readLong(), reader.readLong());
+            case TAG_BYTES -> reader.readBytes();
+            case TAG_LIST -> readList(reader, type, rawType);
+            case TAG_MAP -> readMap(reader, type, rawType);
+            case TAG_OBJECT -> readObject(reader, rawType);
+            case TAG_JSON -> {
+                String json = reader.readString();
+                yield rawType == Object.class ? json : StorageUtil.getGson().fromJson(json, type);
+            }
+            default -> throw new IllegalStateException("Unknown value tag " + tag + ".");
+        };
+    }
+
+    /**
+     * Read a list into an array or a collection.
+     *
+     * @param reader  The reader
+     * @param type    The declared type
+     * @param rawType The raw declared type
+     * @return The array or collection
+     */
+    @SuppressWarnings("unchecked")
+    private Object readList(BinaryReader reader, Type type, Class<?> rawType) {
+        int size = reader.readVarInt();
+
+        if (rawType.isArray()) {
+            Type componentType = type instanceof GenericArrayType arrayType ? arrayType.getGenericComponentType() : rawType.getComponentType();
+            Class<?> componentClass = rawType.getComponentType();
+
+            Object array = Array.newInstance(componentClass, size);
+            for (int i = 0; i < size; i++) {
+                Object element = read(reader, componentType);
+                if (element == null && componentClass.isPrimitive()) {
+                    continue;
+                }
+
+                Array.set(array, i, element);
+            }
+
+            return array;
+        }
+
+        Type elementType = TypeSupport.getTypeArgument(type, 0);
+        Collection<Object> collection = (Collection<Object>) TypeSupport.newCollection(rawType, TypeSupport.getRawType(elementType));
+        for (int i = 0; i < size; i++) {
+            collection.add(read(reader, elementType));
+        }
+
+        return collection;
+    }
+
+    /**
+     * Read a map.
+     *
+     * @param reader  The reader
+     * @param type    The declared type
+     * @param rawType The raw declared type
+     * @return The map
+     */
+    @SuppressWarnings("unchecked")
+    private Object readMap(BinaryReader reader, Type type, Class<?> rawType) {
+        int size = reader.readVarInt();
+        Type keyType = TypeSupport.getTypeArgument(type, 0);
+        Type valueType = TypeSupport.getTypeArgument(type, 1);
+
+        Map<Object, Object> map = (Map<Object, Object>) TypeSupport.newMap(rawType, TypeSupport.getRawType(keyType));
+        for (int i = 0; i < size; i++) {
+            Object key = read(reader, keyType);
+            map.put(key, read(reader, valueType));
+        }
+
+        return map;
+    }
+
+    /**
+     * Read the fields of an object.
+     *
+     * @param reader  The reader
+     * @param rawType The raw declared type
+     * @return The object, or a map of its fields if the declared type isn't specific enough
+     */
+    private Object readObject(BinaryReader reader, Class<?> rawType) {
+        int fieldCount = reader.readVarInt();
+
+        if (rawType == Object.class || Map.class.isAssignableFrom(rawType)) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (int i = 0; i < fieldCount; i++) {
+                String name = reader.readString();
+                fields.put(name, read(reader, Object.class));
+            }
+
+            return fields;
+        }
+
+        ClassLayout layout = ClassLayout.of(rawType);
+        if (layout.record()) {
+            return readRecord(reader, layout, fieldCount);
+        }
+
+        Object instance = layout.newInstance();
+        for (int i = 0; i < fieldCount; i++) {
+            FieldInfo field = layout.getField(reader.readString());
+            if (field == null) {
+                // The field was removed, skip its value
+                read(reader, Object.class);
+                continue;
+            }
+
+            ClassLayout.setField(instance, field, read(reader, field.type()));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Read the fields of a record and pass them to its canonical constructor.
+     *
+     * @param reader     The reader
+     * @param layout     The {@link ClassLayout} of the record
+     * @param fieldCount The amount of written fields
+     * @return The record
+     */
+    private Object readRecord(BinaryReader reader, ClassLayout layout, int fieldCount) {
+        Object[] arguments = layout.newRecordArguments();
+        for (int i = 0; i < fieldCount; i++) {
+            FieldInfo field = layout.getField(reader.readString());
+            if (field == null) {
+                read(reader, Object.class);
+                continue;
+            }
+
+            Object value = read(reader, field.type());
+            if (value == null && field.isPrimitive()) {
+                continue;
+            }
+
+            arguments[field.index()] = value;
+        }
+
+        return layout.newRecord(arguments);
+    }
+}
@@ -0,0 +1,97 @@
+package dev.vertcode.vcore.storage.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte array the {@link BinaryStorageCodec} writes to.
+ * <p>
+ * Integers are written as varints, signed integers are zigzag encoded first so small negative numbers
+ * stay small. Fixed width numbers are written big-endian.
+ */
+final class BinaryWriter {
+
+    private byte[] buffer = new byte[64];
+    private int size;
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            this.buffer[this.size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0L) {
+            this.buffer[this.size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    void writeZigZagInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    void writeZigZagLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeInt(int value) {
+        ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            this.buffer[this.size++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            this.buffer[this.size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Write a length-prefixed byte array.
+     *
+     * @param bytes The bytes you want to write
+     */
+    void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+        this.size += bytes.length;
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 string.
+     *
+     * @param value The string you want to write
+     */
+    void writeString(String value) {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.size + extra <= this.buffer.length) {
+            return;
+        }
+
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(this.size + extra, this.buffer.length * 2));
+    }
+
+}
@@ -0,0 +1,428 @@
+package dev.vertcode.vcore.storage.codec;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import dev.vertcode.vcore.storage.util.StorageUtil;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A BSON {@link Codec} that maps the fields of an object directly to and from a BSON document, without going
+ * through a JSON string.
+ * <p>
+ * The documents have the same shape as the documents written from Gson's JSON, so both can be read by either
+ * path. A {@link UUID}, an enum and a char are written as strings, maps with simple keys as documents and
+ * types of the JDK that aren't handled natively through {@link StorageUtil#getGson()}. Fields that aren't
+ * part of the class, like {@code _id}, are skipped when reading.
+ *
+ * @param <T> The type of the object
+ */
+public class BsonObjectCodec<T> implements Codec<T> {
+
+    private final Class<T> type;
+
+    public BsonObjectCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        writeObject(writer, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        return (T) readObject(reader, this.type);
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return this.type;
+    }
+
+    /**
+     * Write a value.
+     *
+     * @param writer The writer
+     * @param value  The value you want to write
+     */
+    private void write(BsonWriter writer, Object value) {
+        if (value == null) {
+            writer.writeNull();
+        } else if (value instanceof Boolean bool) {
+            writer.writeBoolean(bool);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeInt32(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            writer.writeInt64(number);
+        } else if (value instanceof Float || value instanceof Double) {
+            writer.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof String || value instanceof Character || value instanceof UUID) {
+            writer.writeString(value.toString());
+        } else if (value instanceof Enum<?> constant) {
+            writer.writeString(constant.name());
+        } else if (value instanceof Collection<?> collection) {
+            writer.writeStartArray();
+            for (Object element : collection.toArray()) {
+                write(writer, element);
+            }
+            writer.writeEndArray();
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            writer.writeStartArray();
+            for (int i = 0; i < length; i++) {
+                write(writer, Array.get(value, i));
+            }
+            writer.writeEndArray();
+        } else if (value instanceof Map<?, ?> map && hasSimpleKeys(map)) {
+            writer.writeStartDocument();
+            for (Object entry : map.entrySet().toArray()) {
+                writer.writeName(String.valueOf(((Map.Entry<?, ?>) entry).getKey()));
+                write(writer, ((Map.Entry<?, ?>) entry).getValue());
+            }
+            writer.writeEndDocument();
+        } else if (value instanceof Map<?, ?> || TypeSupport.isJdkType(value.getClass())) {
+            writeJson(writer, StorageUtil.getGson().toJsonTree(value));
+        } else {
+            writeObject(writer, value);
+        }
+    }
+
+    /**
+     * Write the fields of an object as a document.
+     *
+     * @param writer The writer
+     * @param value  The object you want to write
+     */
+    private void writeObject(BsonWriter writer, Object value) {
+        ClassLayout layout = ClassLayout.of(value.getClass());
+
+        writer.writeStartDocument();
+        for (FieldInfo field : layout.fields()) {
+            writer.writeName(field.name());
+            write(writer, ClassLayout.getField(value, field));
+        }
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Write a Gson tree, the same way it would end up in a document parsed from JSON.
+     *
+     * @param writer  The writer
+     * @param element The element you want to write
+     */
+    private void writeJson(BsonWriter writer, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            writer.writeNull();
+        } else if (element instanceof JsonObject object) {
+            writer.writeStartDocument();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writer.writeName(entry.getKey());
+                writeJson(writer, entry.getValue());
+            }
+            writer.writeEndDocument();
+        } else if (element instanceof JsonArray array) {
+            writer.writeStartArray();
+            for (JsonElement child : array) {
+                writeJson(writer, child);
+            }
+            writer.writeEndArray();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                writer.writeBoolean(primitive.getAsBoolean());
+            } else if (primitive.isString()) {
+                writer.writeString(primitive.getAsString());
+            } else {
+                writeJsonNumber(writer, primitive.getAsBigDecimal());
+            }
+        }
+    }
+
+    /**
+     * Write a number of a Gson tree, integers are written as the smallest integer type that fits.
+     *
+     * @param writer The writer
+     * @param number The number you want to write
+     */
+    private void writeJsonNumber(BsonWriter writer, BigDecimal number) {
+        try {
+            long value = number.longValueExact();
+            if (value == (int) value) {
+                writer.writeInt32((int) value);
+            } else {
+                writer.writeInt64(value);
+            }
+        } catch (ArithmeticException ex) {
+            writer.writeDouble(number.doubleValue());
+        }
+    }
+
+    /**
+     * Read the current value.
+     *
+     * @param reader The reader, positioned on the value
+     * @param type   The declared type of the value
+     * @return The value
+     */
+    private Object read(BsonReader reader, Type type) {
+        Class<?> rawType = TypeSupport.getRawType(type);
+        BsonType bsonType = reader.getCurrentBsonType();
+
+        if (bsonType == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+
+        // Let Gson handle everything it would read differently, like untyped values and JDK types
+        if (rawType == Object.class || (TypeSupport.isJdkType(rawType) && !isNativeType(rawType))) {
+            return StorageUtil.getGson().fromJson(readJson(reader), type);
+        }
+
+        return switch (bsonType) {
+            case BOOLEAN -> reader.readBoolean();
+            case INT32 -> TypeSupport.convertNumber(reader.readInt32(), rawType);
+            case INT64 -> TypeSupport.convertNumber(reader.readInt64(), rawType);
+            case DOUBLE -> TypeSupport.convertNumber(reader.readDouble(), rawType);
+            case DECIMAL128 -> TypeSupport.convertNumber(reader.readDecimal128().bigDecimalValue(), rawType);
+            case STRING -> convertKey(reader.readString(), rawType);
+            case ARRAY -> readArray(reader, type, rawType);
+            case DOCUMENT -> Map.class.isAssignableFrom(rawType) ? readMap(reader, type, rawType) : readObject(reader, rawType);
+            default -> StorageUtil.getGson().fromJson(readJson(reader), type);
+        };
+    }
+
+    /**
+     * Read an array into a Java array or a collection.
+     *
+     * @param reader  The reader, positioned on the array
+     * @param type    The declared type
+     * @param rawType The raw declared type
+     * @return The array or collection
+     */
+    @SuppressWarnings("unchecked")
+    private Object readArray(BsonReader reader, Type type, Class<?> rawType) {
+        if (rawType.isArray()) {
+            Type componentType = type instanceof GenericArrayType arrayType ? arrayType.getGenericComponentType() : rawType.getComponentType();
+            List<Object> elements = new ArrayList<>();
+
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                elements.add(read(reader, componentType));
+            }
+            reader.readEndArray();
+
+            Class<?> componentClass = rawType.getComponentType();
+            Object array = Array.newInstance(componentClass, elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                Object element = elements.get(i);
+                if (element != null || !componentClass.isPrimitive()) {
+                    Array.set(array, i, element);
+                }
+            }
+
+            return array;
+        }
+
+        Type elementType = TypeSupport.getTypeArgument(type, 0);
+        Collection<Object> collection = (Collection<Object>) TypeSupport.newCollection(rawType, TypeSupport.getRawType(elementType));
+
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            collection.add(read(reader, elementType));
+        }
+        reader.readEndArray();
+
+        return collection;
+    }
+
+    /**
+     * Read a document into a map.
+     *
+     * @param reader  The reader, positioned on the document
+     * @param type    The declared type
+     * @param rawType The raw declared type
+     * @return The map
+     */
+    @SuppressWarnings("unchecked")
+    private Object readMap(BsonReader reader, Type type, Class<?> rawType) {
+        Type keyType = TypeSupport.getTypeArgument(type, 0);
+        Class<?> rawKeyType = TypeSupport.getRawType(keyType);
+        Type valueType = TypeSupport.getTypeArgument(type, 1);
+
+        Map<Object, Object> map = (Map<Object, Object>) TypeSupport.newMap(rawType, rawKeyType);
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Object key = convertKey(reader.readName(), rawKeyType);
+            map.put(key, read(reader, valueType));
+        }
+        reader.readEndDocument();
+
+        return map;
+    }
+
+    /**
+     * Read a document into an object, fields that aren't part of the class are skipped.
+     *
+     * @param reader  The reader, positioned on the document
+     * @param rawType The class of the object
+     * @return The object
+     */
+    private Object readObject(BsonReader reader, Class<?> rawType) {
+        ClassLayout layout = ClassLayout.of(rawType);
+        Object[] arguments = layout.record() ? layout.newRecordArguments() : null;
+        Object instance = layout.record() ? null : layout.newInstance();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            FieldInfo field = layout.getField(reader.readName());
+            if (field == null) {
+                reader.skipValue();
+                continue;
+            }
+
+            Object value = read(reader, field.type());
+            if (instance != null) {
+                ClassLayout.setField(instance, field, value);
+            } else if (value != null || !field.isPrimitive()) {
+                arguments[field.index()] = value;
+            }
+        }
+        reader.readEndDocument();
+
+        return instance != null ? instance : layout.newRecord(arguments);
+    }
+
+    /**
+     * Read the current value into a Gson tree.
+     *
+     * @param reader The reader, positioned on the value
+     * @return The element
+     */
+    private JsonElement readJson(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT -> {
+                JsonObject object = new JsonObject();
+                reader.readStartDocument();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    String name = reader.readName();
+                    object.add(name, readJson(reader));
+                }
+                reader.readEndDocument();
+                return object;
+            }
+            case ARRAY -> {
+                JsonArray array = new JsonArray();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    array.add(readJson(reader));
+                }
+                reader.readEndArray();
+                return array;
+            }
+            case BOOLEAN -> {
+                return new JsonPrimitive(reader.readBoolean());
+            }
+            case INT32 -> {
+                return new JsonPrimitive(reader.readInt32());
+            }
+            case INT64 -> {
+                return new JsonPrimitive(reader.readInt64());
+            }
+            case DOUBLE -> {
+                return new JsonPrimitive(reader.readDouble());
+            }
+            case DECIMAL128 -> {
+                return new JsonPrimitive(reader.readDecimal128().bigDecimalValue());
+            }
+            case STRING -> {
+                return new JsonPrimitive(reader.readString());
+            }
+            case OBJECT_ID -> {
+                return new JsonPrimitive(reader.readObjectId().toHexString());
+            }
+            case DATE_TIME -> {
+                return new JsonPrimitive(reader.readDateTime());
+            }
+            case NULL -> {
+                reader.readNull();
+                return JsonNull.INSTANCE;
+            }
+            default -> {
+                reader.skipValue();
+                return JsonNull.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Convert a string or a document key to the declared type.
+     *
+     * @param string  The string
+     * @param rawType The raw declared type
+     * @return The converted value
+     */
+    private Object convertKey(String string, Class<?> rawType) {
+        if (rawType == UUID.class) {
+            return UUID.fromString(string);
+        } else if (rawType == char.class || rawType == Character.class) {
+            return string.isEmpty() ? null : string.charAt(0);
+        } else if (rawType == boolean.class || rawType == Boolean.class) {
+            return Boolean.parseBoolean(string);
+        } else if (rawType.isPrimitive() || Number.class.isAssignableFrom(rawType)) {
+            return TypeSupport.convertNumber(new BigDecimal(string), rawType);
+        }
+
+        return TypeSupport.convertString(string, rawType);
+    }
+
+    /**
+     * Check if all keys of a map can be written as document keys and read back.
+     *
+     * @param map The map
+     * @return If the keys are simple
+     */
+    private boolean hasSimpleKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String || key instanceof UUID || key instanceof Enum<?> || key instanceof Number
+                    || key instanceof Character || key instanceof Boolean)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if a JDK type is handled by this codec instead of Gson.
+     *
+     * @param rawType The raw declared type
+     * @return If the type is handled natively
+     */
+    private boolean isNativeType(Class<?> rawType) {
+        return rawType == String.class || rawType == UUID.class || rawType == Boolean.class || rawType == Character.class
+                || rawType == Integer.class || rawType == Long.class || rawType == Double.class || rawType == Float.class
+                || rawType == Short.class || rawType == Byte.class
+                || Collection.class.isAssignableFrom(rawType) || Map.class.isAssignableFrom(rawType) || rawType.isArray();
+    }
+
+}
@@ -0,0 +1,43 @@
+package dev.vertcode.vcore.storage.codec;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} over the remaining bytes of a {@link ByteBuffer}, so a mapped region can be decoded
+ * without copying it to the heap first.
+ */
+public final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int read = Math.min(length, this.buffer.remaining());
+        this.buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+
+}
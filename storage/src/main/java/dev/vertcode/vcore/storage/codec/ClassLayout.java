@@ -0,0 +1,245 @@
+package dev.vertcode.vcore.storage.codec;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fields of a class and the way to create an instance of it, shared by the codecs that map objects field
+ * by field. The fields are the ones Gson would write, with the same names.
+ *
+ * @param type         The class
+ * @param fields       The fields in the order they're written
+ * @param fieldsByName The fields by the name they're written with
+ * @param constructor  The no-args constructor, the canonical constructor of a record, or null
+ * @param record       If the class is a record
+ */
+record ClassLayout(Class<?> type, List<FieldInfo> fields, Map<String, FieldInfo> fieldsByName,
+                   Constructor<?> constructor, boolean record) {
+
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    /**
+     * Get the cached layout of a class.
+     *
+     * @param type The class
+     * @return The layout
+     */
+    static ClassLayout of(Class<?> type) {
+        return LAYOUTS.get(type);
+    }
+
+    /**
+     * Get a field by the name it's written with.
+     *
+     * @param name The name
+     * @return The field, or null if the class has no such field
+     */
+    FieldInfo getField(String name) {
+        return this.fieldsByName.get(name);
+    }
+
+    /**
+     * Create an empty instance of the class.
+     *
+     * @return The instance
+     */
+    Object newInstance() {
+        try {
+            if (this.constructor != null) {
+                return this.constructor.newInstance();
+            }
+
+            // Like Gson, create classes without a no-args constructor without running a constructor
+            return UnsafeAllocator.allocate(this.type);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Couldn't create an instance of " + this.type + ".", ex);
+        }
+    }
+
+    /**
+     * Create the arguments for the canonical constructor of a record, filled with the default values.
+     *
+     * @return The arguments
+     */
+    Object[] newRecordArguments() {
+        Object[] arguments = new Object[this.fields.size()];
+        for (FieldInfo field : this.fields) {
+            Class<?> fieldType = field.field().getType();
+            arguments[field.index()] = fieldType.isPrimitive() ? Array.get(Array.newInstance(fieldType, 1), 0) : null;
+        }
+
+        return arguments;
+    }
+
+    /**
+     * Create a record with its canonical constructor.
+     *
+     * @param arguments The values of the record components
+     * @return The record
+     */
+    Object newRecord(Object[] arguments) {
+        try {
+            return this.constructor.newInstance(arguments);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Couldn't create the record " + this.type + ".", ex);
+        }
+    }
+
+    /**
+     * Set a field of an instance, keeping the default value if the stored value doesn't fit the field anymore.
+     *
+     * @param instance The instance
+     * @param field    The field
+     * @param value    The value
+     */
+    static void setField(Object instance, FieldInfo field, Object value) {
+        if (value == null && field.isPrimitive()) {
+            return;
+        }
+
+        try {
+            field.field().set(instance, value);
+        } catch (IllegalArgumentException ignored) {
+            // The type of the field changed, keep the default value
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Couldn't write the field " + field.field() + ".", ex);
+        }
+    }
+
+    /**
+     * Get a field of an instance.
+     *
+     * @param instance The instance
+     * @param field    The field
+     * @return The value of the field
+     */
+    static Object getField(Object instance, FieldInfo field) {
+        try {
+            return field.field().get(instance);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Couldn't read the field " + field.field() + ".", ex);
+        }
+    }
+
+    /**
+     * Create the layout of a class.
+     *
+     * @param type The class
+     * @return The layout
+     */
+    private static ClassLayout create(Class<?> type) {
+        List<FieldInfo> fields = new ArrayList<>();
+        Map<String, FieldInfo> fieldsByName = new HashMap<>();
+
+        try {
+            if (type.isRecord()) {
+                RecordComponent[] components = type.getRecordComponents();
+                Class<?>[] parameterTypes = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    Field field = type.getDeclaredField(components[i].getName());
+                    field.setAccessible(true);
+                    parameterTypes[i] = components[i].getType();
+
+                    FieldInfo fieldInfo = new FieldInfo(getName(field), field, components[i].getGenericType(), i);
+                    fields.add(fieldInfo);
+                    fieldsByName.put(fieldInfo.name(), fieldInfo);
+                }
+
+                Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+                constructor.setAccessible(true);
+                return new ClassLayout(type, List.copyOf(fields), fieldsByName, constructor, true);
+            }
+
+            // The fields of the class itself shadow the ones of its superclasses
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+
+                    FieldInfo fieldInfo = new FieldInfo(getName(field), field, field.getGenericType(), fields.size());
+                    if (fieldsByName.putIfAbsent(fieldInfo.name(), fieldInfo) != null) {
+                        continue;
+                    }
+
+                    field.setAccessible(true);
+                    fields.add(fieldInfo);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            throw new IllegalStateException("Couldn't inspect the class " + type + ".", ex);
+        }
+
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            constructor = null;
+        }
+
+        return new ClassLayout(type, List.copyOf(fields), fieldsByName, constructor, false);
+    }
+
+    /**
+     * Get the name a field is written with, honoring {@link SerializedName} like Gson.
+     *
+     * @param field The field
+     * @return The name
+     */
+    private static String getName(Field field) {
+        SerializedName serializedName = field.getAnnotation(SerializedName.class);
+        return serializedName == null ? field.getName() : serializedName.value();
+    }
+
+    /**
+     * Creates instances without calling a constructor, through {@code sun.misc.Unsafe}.
+     */
+    private static final class UnsafeAllocator {
+
+        private static final Object UNSAFE;
+        private static final Method ALLOCATE_INSTANCE;
+
+        static {
+            Object unsafe = null;
+            Method allocateInstance = null;
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafe = theUnsafe.get(null);
+                allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Only classes with a no-args constructor can be decoded
+            }
+
+            UNSAFE = unsafe;
+            ALLOCATE_INSTANCE = allocateInstance;
+        }
+
+        static Object allocate(Class<?> type) throws ReflectiveOperationException {
+            if (ALLOCATE_INSTANCE == null) {
+                throw new InstantiationException("Couldn't create " + type + ", add a no-args constructor.");
+            }
+
+            return ALLOCATE_INSTANCE.invoke(UNSAFE, type);
+        }
+
+    }
+}
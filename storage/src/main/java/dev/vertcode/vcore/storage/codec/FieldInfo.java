@@ -0,0 +1,25 @@
+package dev.vertcode.vcore.storage.codec;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+/**
+ * A field that is written by a codec.
+ *
+ * @param name  The name the field is written with
+ * @param field The {@link Field}
+ * @param type  The generic type of the field
+ * @param index The index of the field, used for record components
+ */
+record FieldInfo(String name, Field field, Type type, int index) {
+
+    /**
+     * Check if the field can't hold null.
+     *
+     * @return If the field is primitive
+     */
+    boolean isPrimitive() {
+        return this.field.getType().isPrimitive();
+    }
+
+}
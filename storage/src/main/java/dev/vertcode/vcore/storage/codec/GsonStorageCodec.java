@@ -0,0 +1,46 @@
+package dev.vertcode.vcore.storage.codec;
+
+import dev.vertcode.vcore.storage.util.StorageUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The default {@link StorageCodec}, which writes values as JSON text with {@link StorageUtil#getGson()}.
+ * <p>
+ * The Gson instance is looked up on every call, so {@link StorageUtil#updateGsonBuilder(com.google.gson.GsonBuilder)}
+ * still applies to services that use this codec.
+ */
+public class GsonStorageCodec implements StorageCodec {
+
+    public static final GsonStorageCodec INSTANCE = new GsonStorageCodec();
+
+    @Override
+    public byte[] encode(Object value) {
+        return StorageUtil.getGson().toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return StorageUtil.getGson().fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public <T> T decode(ByteBuffer buffer, Class<T> type) {
+        // Decode the text while it's read from the buffer, instead of copying the bytes first
+        return StorageUtil.getGson().fromJson(new InputStreamReader(new ByteBufferInputStream(buffer.duplicate()), StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public boolean isJson() {
+        return true;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "json";
+    }
+
+}
@@ -0,0 +1,66 @@
+package dev.vertcode.vcore.storage.codec;
+
+import dev.vertcode.vcore.storage.StorageService;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns values into bytes and back, used by every {@link StorageService} to serialize its values.
+ * <p>
+ * Codecs must be thread-safe. Changing the codec of a service makes the data written with the previous
+ * codec unreadable, so only change it for new collections or after migrating the data.
+ *
+ * @see GsonStorageCodec
+ * @see BinaryStorageCodec
+ */
+public interface StorageCodec {
+
+    /**
+     * Encode a value.
+     *
+     * @param value The value you want to encode
+     * @return The encoded value
+     */
+    byte[] encode(Object value);
+
+    /**
+     * Decode a value.
+     *
+     * @param bytes The encoded value
+     * @param type  The {@link Class} of the value
+     * @param <T>   The value type
+     * @return The decoded value
+     */
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    /**
+     * Decode a value from the remaining bytes of a buffer, without changing the position of the buffer.
+     * <p>
+     * Codecs override this to decode straight from the buffer, the default copies the bytes to the heap first.
+     *
+     * @param buffer The encoded value
+     * @param type   The {@link Class} of the value
+     * @param <T>    The value type
+     * @return The decoded value
+     */
+    default <T> T decode(ByteBuffer buffer, Class<T> type) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return decode(bytes, type);
+    }
+
+    /**
+     * Check if the codec writes UTF-8 JSON text, which backends that store documents can store as is.
+     *
+     * @return If the encoded values are JSON
+     */
+    boolean isJson();
+
+    /**
+     * Get the file extension of files holding a single encoded value.
+     *
+     * @return The file extension, without the dot
+     */
+    String getFileExtension();
+
+}
@@ -0,0 +1,209 @@
+package dev.vertcode.vcore.storage.codec;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Reflection helpers shared by the codecs that map objects field by field.
+ */
+final class TypeSupport {
+
+    private TypeSupport() {
+    }
+
+    /**
+     * Convert a number to the declared number type.
+     *
+     * @param number  The number
+     * @param rawType The raw declared type
+     * @return The converted number
+     */
+    static Object convertNumber(Number number, Class<?> rawType) {
+        if (rawType == int.class || rawType == Integer.class) {
+            return number.intValue();
+        } else if (rawType == long.class || rawType == Long.class) {
+            return number.longValue();
+        } else if (rawType == double.class || rawType == Double.class) {
+            return number.doubleValue();
+        } else if (rawType == float.class || rawType == Float.class) {
+            return number.floatValue();
+        } else if (rawType == short.class || rawType == Short.class) {
+            return number.shortValue();
+        } else if (rawType == byte.class || rawType == Byte.class) {
+            return number.byteValue();
+        }
+
+        return number;
+    }
+
+    /**
+     * Convert a string to the declared type, enums are written by name.
+     *
+     * @param string  The string
+     * @param rawType The raw declared type
+     * @return The converted string
+     */
+    static Object convertString(String string, Class<?> rawType) {
+        if (!rawType.isEnum()) {
+            return string;
+        }
+
+        for (Object constant : rawType.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(string)) {
+                return constant;
+            }
+        }
+
+        // The constant was removed, like Gson we read it as null
+        return null;
+    }
+
+    /**
+     * Create an empty collection for a declared collection type.
+     *
+     * @param rawType     The raw declared type
+     * @param elementType The raw element type
+     * @return The collection
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Collection<?> newCollection(Class<?> rawType, Class<?> elementType) {
+        if (EnumSet.class.isAssignableFrom(rawType)) {
+            return EnumSet.noneOf((Class<Enum>) elementType);
+        }
+
+        Object instance = newConcreteInstance(rawType);
+        if (instance instanceof Collection<?> collection) {
+            return collection;
+        }
+
+        if (SortedSet.class.isAssignableFrom(rawType)) {
+            return new TreeSet<>();
+        } else if (Set.class.isAssignableFrom(rawType)) {
+            return new LinkedHashSet<>();
+        } else if (Queue.class.isAssignableFrom(rawType)) {
+            return new ArrayDeque<>();
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * Create an empty map for a declared map type.
+     *
+     * @param rawType The raw declared type
+     * @param keyType The raw key type
+     * @return The map
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Map<?, ?> newMap(Class<?> rawType, Class<?> keyType) {
+        if (EnumMap.class.isAssignableFrom(rawType)) {
+            return new EnumMap(keyType);
+        }
+
+        Object instance = newConcreteInstance(rawType);
+        if (instance instanceof Map<?, ?> map) {
+            return map;
+        }
+
+        if (ConcurrentNavigableMap.class.isAssignableFrom(rawType)) {
+            return new ConcurrentSkipListMap<>();
+        } else if (ConcurrentMap.class.isAssignableFrom(rawType)) {
+            return new ConcurrentHashMap<>();
+        } else if (SortedMap.class.isAssignableFrom(rawType)) {
+            return new TreeMap<>();
+        }
+
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Create an instance of a concrete class with its public no-args constructor.
+     *
+     * @param rawType The class
+     * @return The instance, or null if the class is abstract or has no such constructor
+     */
+    static Object newConcreteInstance(Class<?> rawType) {
+        if (rawType.isInterface() || Modifier.isAbstract(rawType.getModifiers())) {
+            return null;
+        }
+
+        try {
+            return rawType.getConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Check if a class belongs to the JDK, these are written with Gson instead of reflection.
+     *
+     * @param type The class
+     * @return If the class is a JDK class
+     */
+    static boolean isJdkType(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    /**
+     * Get a type argument of a parameterized type.
+     *
+     * @param type  The type
+     * @param index The index of the type argument
+     * @return The type argument, or {@link Object} if it's unknown
+     */
+    static Type getTypeArgument(Type type, int index) {
+        if (!(type instanceof ParameterizedType parameterizedType)) {
+            return Object.class;
+        }
+
+        Type[] arguments = parameterizedType.getActualTypeArguments();
+        return index < arguments.length ? arguments[index] : Object.class;
+    }
+
+    /**
+     * Get the raw class of a type.
+     *
+     * @param type The type
+     * @return The raw class
+     */
+    static Class<?> getRawType(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return clazz;
+        } else if (type instanceof ParameterizedType parameterizedType) {
+            return (Class<?>) parameterizedType.getRawType();
+        } else if (type instanceof GenericArrayType arrayType) {
+            return Array.newInstance(getRawType(arrayType.getGenericComponentType()), 0).getClass();
+        } else if (type instanceof WildcardType wildcardType) {
+            return getRawType(wildcardType.getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable<?> typeVariable) {
+            return getRawType(typeVariable.getBounds()[0]);
+        }
+
+        return Object.class;
+    }
+
+}
@@ -0,0 +1,44 @@
+package dev.vertcode.vcore.storage.invalidation;
+
+import java.util.Collection;
+
+/**
+ * Tells the other nodes that share a database which values were written, so they can drop their cached copies.
+ * <p>
+ * A channel never delivers the invalidations a node published itself back to that node. Channels must be
+ * thread-safe, a single channel can be shared by all services of a node.
+ *
+ * @see MongoInvalidationChannel
+ * @see LocalInvalidationHub
+ */
+public interface InvalidationChannel {
+
+    /**
+     * Tell the other nodes that values were written.
+     *
+     * @param collection The name of the collection the values are stored in
+     * @param keys       The keys of the written values
+     */
+    void publish(String collection, Collection<String> keys);
+
+    /**
+     * Receive the invalidations the other nodes publish for a collection, replacing the previous listener.
+     *
+     * @param collection The name of the collection
+     * @param listener   The {@link InvalidationListener}
+     */
+    void subscribe(String collection, InvalidationListener listener);
+
+    /**
+     * Stop receiving the invalidations for a collection.
+     *
+     * @param collection The name of the collection
+     */
+    void unsubscribe(String collection);
+
+    /**
+     * Close the channel, after this nothing is published or received anymore.
+     */
+    void close();
+
+}
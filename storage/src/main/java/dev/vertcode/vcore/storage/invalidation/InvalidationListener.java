@@ -0,0 +1,21 @@
+package dev.vertcode.vcore.storage.invalidation;
+
+/**
+ * Receives the invalidations of an {@link InvalidationChannel}.
+ */
+public interface InvalidationListener {
+
+    /**
+     * Called when another node wrote a value.
+     *
+     * @param key The key of the value
+     */
+    void onInvalidate(String key);
+
+    /**
+     * Called when invalidations might have been missed, like after the channel lost its connection, so
+     * everything that is cached could be outdated.
+     */
+    void onInvalidateAll();
+
+}
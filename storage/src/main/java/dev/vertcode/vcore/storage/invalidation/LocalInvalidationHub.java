@@ -0,0 +1,92 @@
+package dev.vertcode.vcore.storage.invalidation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Connects {@link InvalidationChannel}s in the same process, for tests and for running several nodes in one JVM.
+ * <p>
+ * Every {@link #connect()} creates the channel of a node, invalidations are delivered to the other connected
+ * channels on the publishing thread.
+ */
+public class LocalInvalidationHub {
+
+    private final List<LocalChannel> channels = new CopyOnWriteArrayList<>();
+
+    /**
+     * Connect a node to the hub.
+     *
+     * @return The {@link InvalidationChannel} of the node
+     */
+    public InvalidationChannel connect() {
+        LocalChannel channel = new LocalChannel();
+        this.channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * Deliver invalidations to every channel except the one that published them.
+     *
+     * @param publisher  The channel that published the invalidations
+     * @param collection The name of the collection
+     * @param keys       The keys of the written values
+     */
+    private void deliver(LocalChannel publisher, String collection, Collection<String> keys) {
+        for (LocalChannel channel : this.channels) {
+            if (channel == publisher) {
+                continue;
+            }
+
+            InvalidationListener listener = channel.listeners.get(collection);
+            if (listener == null) {
+                continue;
+            }
+
+            for (String key : keys) {
+                try {
+                    listener.onInvalidate(key);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * The channel of a single node.
+     */
+    private class LocalChannel implements InvalidationChannel {
+
+        private final Map<String, InvalidationListener> listeners = new ConcurrentHashMap<>();
+
+        @Override
+        public void publish(String collection, Collection<String> keys) {
+            if (!channels.contains(this)) {
+                return;
+            }
+
+            deliver(this, collection, keys);
+        }
+
+        @Override
+        public void subscribe(String collection, InvalidationListener listener) {
+            this.listeners.put(collection, listener);
+        }
+
+        @Override
+        public void unsubscribe(String collection) {
+            this.listeners.remove(collection);
+        }
+
+        @Override
+        public void close() {
+            channels.remove(this);
+            this.listeners.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,262 @@
+package dev.vertcode.vcore.storage.invalidation;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An {@link InvalidationChannel} that goes through the Mongo database the nodes share.
+ * <p>
+ * Invalidations are inserted into a small capped collection and every node follows that collection with a
+ * change stream, skipping the invalidations it inserted itself. Going through a separate collection, instead
+ * of watching the data collections, means deletes carry the key of the value and every write is tagged with
+ * the node that made it. Change streams need a replica set or a sharded cluster.
+ * <p>
+ * When the change stream breaks it's resumed where it left off. If that isn't possible anymore, the listeners
+ * are told to invalidate everything, because invalidations might have been missed.
+ */
+public class MongoInvalidationChannel implements InvalidationChannel {
+
+    public static final String DEFAULT_COLLECTION_NAME = "vcore_invalidations";
+
+    private static final long COLLECTION_SIZE = 16L * 1024L * 1024L;
+    private static final int MAX_KEYS_PER_DOCUMENT = 1000;
+    private static final long RETRY_DELAY_MILLIS = 1000L;
+    private static final int NAMESPACE_EXISTS_CODE = 48;
+
+    private final MongoClient mongoClient;
+    private final MongoCollection<Document> collection;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, InvalidationListener> listeners = new ConcurrentHashMap<>();
+    private final Thread watchThread;
+
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private volatile boolean closed = false;
+
+    public MongoInvalidationChannel(ConnectionString connectionString) {
+        this(connectionString, DEFAULT_COLLECTION_NAME);
+    }
+
+    public MongoInvalidationChannel(ConnectionString connectionString, String collectionName) {
+        if (connectionString.getDatabase() == null) {
+            throw new IllegalArgumentException("No database specified in the connection string.");
+        }
+
+        // The change stream keeps a cursor open, so the channel uses its own client
+        this.mongoClient = MongoClients.create(connectionString);
+        MongoDatabase database = this.mongoClient.getDatabase(connectionString.getDatabase());
+        createCollection(database, collectionName);
+        this.collection = database.getCollection(collectionName);
+
+        this.watchThread = new Thread(this::watch, "vcore-invalidation-" + collectionName);
+        this.watchThread.setDaemon(true);
+        this.watchThread.start();
+    }
+
+    @Override
+    public void publish(String collection, Collection<String> keys) {
+        if (this.closed || keys.isEmpty()) {
+            return;
+        }
+
+        // Split huge batches, so a document never gets close to the document size limit
+        List<Document> documents = new ArrayList<>();
+        List<String> batch = new ArrayList<>(Math.min(keys.size(), MAX_KEYS_PER_DOCUMENT));
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() < MAX_KEYS_PER_DOCUMENT) {
+                continue;
+            }
+
+            documents.add(createInvalidation(collection, batch));
+            batch = new ArrayList<>(MAX_KEYS_PER_DOCUMENT);
+        }
+
+        if (!batch.isEmpty()) {
+            documents.add(createInvalidation(collection, batch));
+        }
+
+        try {
+            this.collection.insertMany(documents);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void subscribe(String collection, InvalidationListener listener) {
+        this.listeners.put(collection, listener);
+    }
+
+    @Override
+    public void unsubscribe(String collection) {
+        this.listeners.remove(collection);
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+
+        // Closing the cursor wakes up the watch thread
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = this.cursor;
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (Exception ignored) {
+                // The client is closed next anyway
+            }
+        }
+
+        this.watchThread.interrupt();
+        this.mongoClient.close();
+    }
+
+    /**
+     * Follow the invalidations of the other nodes until the channel is closed.
+     */
+    private void watch() {
+        List<Bson> pipeline = List.of(Aggregates.match(Filters.ne("fullDocument.node", this.nodeId)));
+        BsonDocument resumeToken = null;
+        boolean missed = false;
+
+        while (!this.closed) {
+            boolean opened = false;
+            try {
+                ChangeStreamIterable<Document> changes = this.collection.watch(pipeline);
+                if (resumeToken != null) {
+                    changes = changes.resumeAfter(resumeToken);
+                }
+
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changes.cursor()) {
+                    opened = true;
+                    this.cursor = cursor;
+
+                    if (missed) {
+                        missed = false;
+                        invalidateAll();
+                    }
+
+                    while (!this.closed) {
+                        ChangeStreamDocument<Document> change = cursor.tryNext();
+                        if (change != null) {
+                            handle(change.getFullDocument());
+                        }
+
+                        resumeToken = cursor.getResumeToken();
+                    }
+                }
+            } catch (Exception ex) {
+                if (this.closed) {
+                    return;
+                }
+
+                ex.printStackTrace();
+
+                // Without a way to resume we can't know what we missed
+                if (!opened || resumeToken == null) {
+                    resumeToken = null;
+                    missed = true;
+                }
+
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver an invalidation to the listener of its collection.
+     *
+     * @param invalidation The invalidation document
+     */
+    private void handle(Document invalidation) {
+        if (invalidation == null) {
+            return;
+        }
+
+        InvalidationListener listener = this.listeners.get(invalidation.getString("collection"));
+        if (listener == null) {
+            return;
+        }
+
+        for (String key : invalidation.getList("keys", String.class)) {
+            try {
+                listener.onInvalidate(key);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Tell all listeners to invalidate everything.
+     */
+    private void invalidateAll() {
+        for (InvalidationListener listener : this.listeners.values()) {
+            try {
+                listener.onInvalidateAll();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Create an invalidation document.
+     *
+     * @param collection The name of the collection
+     * @param keys       The keys of the written values
+     * @return The invalidation document
+     */
+    private Document createInvalidation(String collection, List<String> keys) {
+        return new Document("node", this.nodeId)
+                .append("collection", collection)
+                .append("keys", keys);
+    }
+
+    /**
+     * Create the capped invalidation collection if it doesn't exist yet.
+     *
+     * @param database       The database
+     * @param collectionName The name of the collection
+     */
+    private static void createCollection(MongoDatabase database, String collectionName) {
+        for (String name : database.listCollectionNames()) {
+            if (name.equals(collectionName)) {
+                return;
+            }
+        }
+
+        try {
+            database.createCollection(collectionName, new CreateCollectionOptions().capped(true).sizeInBytes(COLLECTION_SIZE));
+        } catch (MongoCommandException ex) {
+            // Another node created it first
+            if (ex.getErrorCode() != NAMESPACE_EXISTS_CODE) {
+                throw ex;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package dev.vertcode.vcore.storage.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.
+ * <p>
+ * Every power of two is split into 8 linear buckets, so a recorded latency is off by at most 12.5% while the
+ * histogram stays a fixed 488 counters. Recording is a few atomic increments, so it can stay on in production.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long latency = Math.max(0L, nanos);
+
+        this.buckets.incrementAndGet(getBucket(latency));
+        this.totalNanos.add(latency);
+        this.maxNanos.accumulate(latency);
+    }
+
+    /**
+     * Record the latency of an operation that started at a {@link System#nanoTime()}.
+     *
+     * @param startNanos The {@link System#nanoTime()} the operation started at
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Take a snapshot of the recorded latencies.
+     *
+     * @return The {@link LatencySnapshot}
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            count += counts[i];
+        }
+
+        if (count == 0L) {
+            return LatencySnapshot.EMPTY;
+        }
+
+        long maxNanos = this.maxNanos.get();
+        return new LatencySnapshot(
+                count,
+                (double) this.totalNanos.sum() / count,
+                getPercentile(counts, count, 0.5D, maxNanos),
+                getPercentile(counts, count, 0.9D, maxNanos),
+                getPercentile(counts, count, 0.99D, maxNanos),
+                getPercentile(counts, count, 0.999D, maxNanos),
+                maxNanos
+        );
+    }
+
+    /**
+     * Forget all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0L);
+        }
+
+        this.totalNanos.reset();
+        this.maxNanos.reset();
+    }
+
+    /**
+     * Get a percentile from the bucket counts.
+     *
+     * @param counts     The bucket counts
+     * @param count      The total count
+     * @param percentile The percentile, between 0 and 1
+     * @param maxNanos   The highest recorded latency
+     * @return The highest latency of the bucket the percentile falls in
+     */
+    private static long getPercentile(long[] counts, long count, double percentile, long maxNanos) {
+        long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), maxNanos);
+            }
+        }
+
+        return maxNanos;
+    }
+
+    /**
+     * Get the bucket of a latency.
+     *
+     * @param nanos The latency, at least 0
+     * @return The index of the bucket
+     */
+    static int getBucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the highest latency that falls in a bucket.
+     *
+     * @param bucket The index of the bucket
+     * @return The highest latency of the bucket
+     */
+    static long getBucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+        return lowerBound + width - 1L;
+    }
+
+}
@@ -0,0 +1,31 @@
+package dev.vertcode.vcore.storage.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of a {@link LatencyHistogram}, all latencies are in nanoseconds.
+ *
+ * @param count     The amount of recorded latencies
+ * @param meanNanos The mean latency
+ * @param p50Nanos  The median latency
+ * @param p90Nanos  The 90th percentile
+ * @param p99Nanos  The 99th percentile
+ * @param p999Nanos The 99.9th percentile
+ * @param maxNanos  The highest latency
+ */
+public record LatencySnapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos,
+                              long p999Nanos, long maxNanos) {
+
+    public static final LatencySnapshot EMPTY = new LatencySnapshot(0L, 0D, 0L, 0L, 0L, 0L, 0L);
+
+    /**
+     * Convert a latency of the snapshot to milliseconds.
+     *
+     * @param nanos The latency in nanoseconds
+     * @return The latency in milliseconds
+     */
+    public static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+}
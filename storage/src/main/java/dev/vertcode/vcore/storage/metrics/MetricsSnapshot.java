@@ -0,0 +1,42 @@
+package dev.vertcode.vcore.storage.metrics;
+
+import java.util.Map;
+
+/**
+ * A point-in-time copy of the {@link StorageMetrics} of a collection.
+ *
+ * @param collection  The name of the collection
+ * @param latencies   The latencies per {@link Operation}
+ * @param cacheHits   The amount of lookups that found a cached value
+ * @param cacheMisses The amount of lookups that didn't find a cached value
+ * @param missingHits The amount of lookups that were answered by the negative cache
+ * @param spillHits   The amount of values that were promoted from the spill cache
+ * @param evictions   The amount of values that were evicted because the cache was full
+ * @param expirations The amount of values that expired from the cache
+ * @param cacheSize   The amount of cached values
+ */
+public record MetricsSnapshot(String collection, Map<Operation, LatencySnapshot> latencies, long cacheHits,
+                              long cacheMisses, long missingHits, long spillHits, long evictions, long expirations,
+                              int cacheSize) {
+
+    /**
+     * Get the latencies of an {@link Operation}.
+     *
+     * @param operation The {@link Operation}
+     * @return The {@link LatencySnapshot}
+     */
+    public LatencySnapshot latency(Operation operation) {
+        return this.latencies.getOrDefault(operation, LatencySnapshot.EMPTY);
+    }
+
+    /**
+     * Get the share of lookups that found a cached value.
+     *
+     * @return The hit ratio, between 0 and 1, or 0 if nothing was looked up
+     */
+    public double hitRatio() {
+        long lookups = this.cacheHits + this.cacheMisses;
+        return lookups == 0L ? 0D : (double) this.cacheHits / lookups;
+    }
+
+}
@@ -0,0 +1,41 @@
+package dev.vertcode.vcore.storage.metrics;
+
+/**
+ * The operations of a {@link dev.vertcode.vcore.storage.StorageService} that {@link StorageMetrics} times.
+ */
+public enum Operation {
+
+    /**
+     * Getting a single value, including the values that are served from the cache.
+     */
+    GET,
+    /**
+     * Getting multiple values at once.
+     */
+    GET_MANY,
+    /**
+     * Running a query.
+     */
+    QUERY,
+    /**
+     * Saving a single value.
+     */
+    SAVE,
+    /**
+     * Saving a batch of values.
+     */
+    SAVE_ALL,
+    /**
+     * Deleting a value.
+     */
+    DELETE,
+    /**
+     * Saving all changed cached values, which the auto save and the shutdown do.
+     */
+    AUTO_SAVE,
+    /**
+     * Removing the expired values from the cache.
+     */
+    CLEAN
+
+}
@@ -0,0 +1,266 @@
+package dev.vertcode.vcore.storage.metrics;
+
+import dev.vertcode.vcore.storage.cache.CacheStats;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The counters and latency histograms of a single collection.
+ * <p>
+ * Every {@link dev.vertcode.vcore.storage.StorageService} keeps one, see
+ * {@link dev.vertcode.vcore.storage.StorageService#getMetrics()}. Read it with {@link #snapshot()}, or through
+ * JMX once it's registered with {@link #registerMBean()}.
+ */
+public class StorageMetrics implements StorageMetricsMXBean {
+
+    public static final String JMX_DOMAIN = "dev.vertcode.vcore.storage";
+
+    // The metrics that currently own each registered name
+    private static final Map<ObjectName, StorageMetrics> REGISTERED = new HashMap<>();
+
+    private final String collection;
+    private final CacheStats cacheStats;
+    private final IntSupplier cacheSize;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final LongAdder missingHits = new LongAdder();
+    private final LongAdder spillHits = new LongAdder();
+
+    private ObjectName objectName;
+
+    /**
+     * Create the metrics of a collection.
+     *
+     * @param collection The name of the collection
+     * @param cacheStats The {@link CacheStats} of the cache of the collection
+     * @param cacheSize  Supplies the amount of cached values
+     */
+    public StorageMetrics(String collection, CacheStats cacheStats, IntSupplier cacheSize) {
+        this.collection = collection;
+        this.cacheStats = cacheStats;
+        this.cacheSize = cacheSize;
+
+        // The map is never modified after this, so it can be read without locking
+        for (Operation operation : Operation.values()) {
+            this.latencies.put(operation, operation == Operation.CLEAN ? cacheStats.getCleanLatency() : new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Record the latency of an operation.
+     *
+     * @param operation  The {@link Operation}
+     * @param startNanos The {@link System#nanoTime()} the operation started at
+     */
+    public void record(Operation operation, long startNanos) {
+        this.latencies.get(operation).recordSince(startNanos);
+    }
+
+    /**
+     * Record a lookup that was answered by the negative cache.
+     */
+    public void recordMissingHit() {
+        this.missingHits.increment();
+    }
+
+    /**
+     * Record a value that was promoted from the spill cache.
+     */
+    public void recordSpillHit() {
+        this.spillHits.increment();
+    }
+
+    /**
+     * Get the latencies of an operation.
+     *
+     * @param operation The {@link Operation}
+     * @return The {@link LatencyHistogram}
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return this.latencies.get(operation);
+    }
+
+    /**
+     * Take a snapshot of all counters and latencies.
+     *
+     * @return The {@link MetricsSnapshot}
+     */
+    public MetricsSnapshot snapshot() {
+        Map<Operation, LatencySnapshot> latencies = new EnumMap<>(Operation.class);
+        for (Map.Entry<Operation, LatencyHistogram> entry : this.latencies.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        return new MetricsSnapshot(
+                this.collection,
+                Collections.unmodifiableMap(latencies),
+                this.cacheStats.getHits(),
+                this.cacheStats.getMisses(),
+                this.missingHits.sum(),
+                this.spillHits.sum(),
+                this.cacheStats.getEvictions(),
+                this.cacheStats.getExpirations(),
+                this.cacheSize.getAsInt()
+        );
+    }
+
+    /**
+     * Register the metrics with the platform {@link MBeanServer}, replacing the metrics of an earlier service
+     * for the same collection.
+     */
+    public void registerMBean() {
+        synchronized (REGISTERED) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=StorageMetrics,collection=" + ObjectName.quote(this.collection));
+
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+
+                server.registerMBean(this, objectName);
+                REGISTERED.put(objectName, this);
+                this.objectName = objectName;
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Unregister the metrics from the platform {@link MBeanServer}, if they're still registered.
+     */
+    public void unregisterMBean() {
+        synchronized (REGISTERED) {
+            ObjectName objectName = this.objectName;
+            this.objectName = null;
+
+            // Another service for the collection might have replaced us
+            if (objectName == null || !REGISTERED.remove(objectName, this)) {
+                return;
+            }
+
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public String getCollection() {
+        return this.collection;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return this.cacheStats.getHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return this.cacheStats.getMisses();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        long hits = this.cacheStats.getHits();
+        long lookups = hits + this.cacheStats.getMisses();
+        return lookups == 0L ? 0D : (double) hits / lookups;
+    }
+
+    @Override
+    public long getMissingHits() {
+        return this.missingHits.sum();
+    }
+
+    @Override
+    public long getSpillHits() {
+        return this.spillHits.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.cacheStats.getEvictions();
+    }
+
+    @Override
+    public long getExpirations() {
+        return this.cacheStats.getExpirations();
+    }
+
+    @Override
+    public int getCacheSize() {
+        return this.cacheSize.getAsInt();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyHistogram> entry : this.latencies.entrySet()) {
+            counts.put(getKey(entry.getKey()), entry.getValue().snapshot().count());
+        }
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getLatenciesMillis() {
+        Map<String, Double> latencies = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyHistogram> entry : this.latencies.entrySet()) {
+            String key = getKey(entry.getKey());
+            LatencySnapshot snapshot = entry.getValue().snapshot();
+
+            latencies.put(key + ".mean", LatencySnapshot.toMillis(snapshot.meanNanos()));
+            latencies.put(key + ".p50", LatencySnapshot.toMillis(snapshot.p50Nanos()));
+            latencies.put(key + ".p90", LatencySnapshot.toMillis(snapshot.p90Nanos()));
+            latencies.put(key + ".p99", LatencySnapshot.toMillis(snapshot.p99Nanos()));
+            latencies.put(key + ".p999", LatencySnapshot.toMillis(snapshot.p999Nanos()));
+            latencies.put(key + ".max", LatencySnapshot.toMillis(snapshot.maxNanos()));
+        }
+
+        return latencies;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : this.latencies.values()) {
+            histogram.reset();
+        }
+
+        this.missingHits.reset();
+        this.spillHits.reset();
+        this.cacheStats.reset();
+    }
+
+    /**
+     * Get the key an operation is exposed with.
+     *
+     * @param operation The {@link Operation}
+     * @return The lower case name of the operation
+     */
+    private static String getKey(Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return "StorageMetrics{" +
+                "collection='" + collection + '\'' +
+                ", cacheStats=" + cacheStats +
+                ", missingHits=" + missingHits +
+                ", spillHits=" + spillHits +
+                '}';
+    }
+
+}
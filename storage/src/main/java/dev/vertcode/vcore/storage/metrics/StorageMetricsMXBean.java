@@ -0,0 +1,48 @@
+package dev.vertcode.vcore.storage.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link StorageMetrics} of a collection, registered as
+ * {@code dev.vertcode.vcore.storage:type=StorageMetrics,collection=<name>}.
+ */
+public interface StorageMetricsMXBean {
+
+    String getCollection();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    double getCacheHitRatio();
+
+    long getMissingHits();
+
+    long getSpillHits();
+
+    long getEvictions();
+
+    long getExpirations();
+
+    int getCacheSize();
+
+    /**
+     * Get the amount of times every {@link Operation} ran.
+     *
+     * @return The counts by the name of the operation
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Get the latency percentiles of every {@link Operation} in milliseconds.
+     *
+     * @return The latencies by keys like {@code get.p99}, {@code save.mean} and {@code save.max}
+     */
+    Map<String, Double> getLatenciesMillis();
+
+    /**
+     * Reset all counters and latencies.
+     */
+    void reset();
+
+}
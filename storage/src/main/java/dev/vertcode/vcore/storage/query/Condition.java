@@ -0,0 +1,126 @@
+package dev.vertcode.vcore.storage.query;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A single condition of a {@link Query}, comparing a field to a value.
+ * <p>
+ * Values are compared the way they're stored: numbers by their numeric value, and a {@link UUID}, an enum or a
+ * char by their string. Values that can't be ordered against each other never match a range.
+ *
+ * @param field    The path of the field, nested fields are separated by dots
+ * @param operator The {@link Operator}
+ * @param value    The value, a {@link Collection} of values for {@link Operator#IN}
+ */
+public record Condition(String field, Operator operator, @Nullable Object value) {
+
+    static final int UNORDERED = Integer.MIN_VALUE;
+
+    /**
+     * Check if the value of the field matches the condition.
+     *
+     * @param fieldValue The value of the field
+     * @return If the condition matches
+     */
+    public boolean matches(@Nullable Object fieldValue) {
+        Object actual = normalize(fieldValue);
+
+        return switch (this.operator) {
+            case EQUALS -> isEqual(actual, normalize(this.value));
+            case NOT_EQUALS -> !isEqual(actual, normalize(this.value));
+            case GREATER_THAN, GREATER_THAN_OR_EQUALS, LESS_THAN, LESS_THAN_OR_EQUALS -> isInRange(actual);
+            case IN -> {
+                for (Object candidate : (Collection<?>) this.value) {
+                    if (isEqual(actual, normalize(candidate))) {
+                        yield true;
+                    }
+                }
+
+                yield false;
+            }
+        };
+    }
+
+    /**
+     * Check if a normalized field value is in the range of the condition.
+     *
+     * @param actual The normalized value of the field
+     * @return If the value is in range, false if it can't be ordered against the value of the condition
+     */
+    private boolean isInRange(@Nullable Object actual) {
+        int comparison = compare(actual, normalize(this.value));
+        if (comparison == UNORDERED) {
+            return false;
+        }
+
+        return switch (this.operator) {
+            case GREATER_THAN -> comparison > 0;
+            case GREATER_THAN_OR_EQUALS -> comparison >= 0;
+            case LESS_THAN -> comparison < 0;
+            default -> comparison <= 0;
+        };
+    }
+
+    /**
+     * Convert a value to the form it's compared in.
+     *
+     * @param value The value
+     * @return The normalized value
+     */
+    static @Nullable Object normalize(@Nullable Object value) {
+        if (value instanceof BigDecimal) {
+            return value;
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            double doubleValue = number.doubleValue();
+            return Double.isFinite(doubleValue) ? new BigDecimal(number.toString()) : doubleValue;
+        } else if (value instanceof Enum<?> constant) {
+            return constant.name();
+        } else if (value instanceof UUID || value instanceof Character) {
+            return value.toString();
+        }
+
+        return value;
+    }
+
+    /**
+     * Compare two normalized values.
+     *
+     * @param first  The first value
+     * @param second The second value
+     * @return The sign of the comparison, or {@link #UNORDERED} if the values can't be ordered
+     */
+    static int compare(@Nullable Object first, @Nullable Object second) {
+        if (first instanceof BigDecimal firstNumber && second instanceof BigDecimal secondNumber) {
+            return Integer.signum(firstNumber.compareTo(secondNumber));
+        } else if (first instanceof String firstString && second instanceof String secondString) {
+            return Integer.signum(firstString.compareTo(secondString));
+        } else if (first instanceof Boolean firstBool && second instanceof Boolean secondBool) {
+            return Boolean.compare(firstBool, secondBool);
+        }
+
+        return UNORDERED;
+    }
+
+    /**
+     * Check if two normalized values are equal.
+     *
+     * @param first  The first value
+     * @param second The second value
+     * @return If the values are equal
+     */
+    private static boolean isEqual(@Nullable Object first, @Nullable Object second) {
+        if (first instanceof BigDecimal firstNumber && second instanceof BigDecimal secondNumber) {
+            return firstNumber.compareTo(secondNumber) == 0;
+        }
+
+        return Objects.equals(first, second);
+    }
+
+}
@@ -0,0 +1,192 @@
+package dev.vertcode.vcore.storage.query;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import dev.vertcode.vcore.storage.codec.ByteBufferInputStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads fields by their path, from objects with reflection and from JSON without deserializing it.
+ * <p>
+ * A path uses the names fields are stored with, so the names Gson writes, with nested fields separated by dots.
+ */
+final class FieldPaths {
+
+    private static final ClassValue<Map<String, Field>> FIELDS = new ClassValue<>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            Map<String, Field> fields = new HashMap<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                        continue;
+                    }
+
+                    SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                    String name = serializedName == null ? field.getName() : serializedName.value();
+                    if (fields.containsKey(name)) {
+                        continue;
+                    }
+
+                    // Fields of the JDK can't be opened, these are simply not found
+                    if (field.trySetAccessible()) {
+                        fields.put(name, field);
+                    }
+                }
+            }
+
+            return fields;
+        }
+    };
+
+    private FieldPaths() {
+    }
+
+    /**
+     * Read a field of an object.
+     *
+     * @param value The object
+     * @param path  The path of the field
+     * @return The value of the field, or null if the object doesn't have it
+     */
+    static @Nullable Object get(Object value, String path) {
+        Object current = value;
+        int start = 0;
+        while (current != null && start <= path.length()) {
+            int end = path.indexOf('.', start);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            current = getChild(current, path.substring(start, end));
+            start = end + 1;
+        }
+
+        return current;
+    }
+
+    /**
+     * Read the fields of a JSON object, skipping everything else.
+     *
+     * @param json  The UTF-8 encoded JSON object
+     * @param paths The paths of the fields you want to read
+     * @return The values by path, numbers are read as {@link BigDecimal}, objects and arrays as {@link JsonElement}
+     * @throws IOException If the JSON couldn't be read
+     */
+    static Map<String, Object> scan(ByteBuffer json, Collection<String> paths) throws IOException {
+        Map<String, Object> values = new HashMap<>();
+
+        Reader reader = new InputStreamReader(new ByteBufferInputStream(json.duplicate()), StandardCharsets.UTF_8);
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            scanObject(jsonReader, "", paths, values);
+        }
+
+        return values;
+    }
+
+    /**
+     * Read the wanted fields of the object the reader is positioned on.
+     *
+     * @param reader The reader
+     * @param prefix The path of the object, ending with a dot, or empty for the root
+     * @param paths  The paths of the fields you want to read
+     * @param values The map the values are added to
+     * @throws IOException If the JSON couldn't be read
+     */
+    private static void scanObject(JsonReader reader, String prefix, Collection<String> paths, Map<String, Object> values) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            // Stop reading as soon as every field was found
+            if (values.size() == paths.size()) {
+                return;
+            }
+
+            String path = prefix + reader.nextName();
+            if (paths.contains(path)) {
+                values.put(path, readValue(reader));
+            } else if (reader.peek() == JsonToken.BEGIN_OBJECT && isParentPath(path, paths)) {
+                scanObject(reader, path + ".", paths, values);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read the value the reader is positioned on.
+     *
+     * @param reader The reader
+     * @return The value
+     * @throws IOException If the JSON couldn't be read
+     */
+    private static @Nullable Object readValue(JsonReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case NULL -> {
+                reader.nextNull();
+                yield null;
+            }
+            case BOOLEAN -> reader.nextBoolean();
+            case NUMBER -> new BigDecimal(reader.nextString());
+            case STRING -> reader.nextString();
+            default -> JsonParser.parseReader(reader);
+        };
+    }
+
+    /**
+     * Check if a path holds one of the wanted fields.
+     *
+     * @param path  The path
+     * @param paths The paths of the wanted fields
+     * @return If one of the wanted fields is nested in the path
+     */
+    private static boolean isParentPath(String path, Collection<String> paths) {
+        for (String wanted : paths) {
+            if (wanted.length() > path.length() && wanted.startsWith(path) && wanted.charAt(path.length()) == '.') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Read a single field or map key.
+     *
+     * @param value The object or map
+     * @param name  The name of the field
+     * @return The value, or null if there's no such field
+     */
+    private static @Nullable Object getChild(Object value, String name) {
+        if (value instanceof Map<?, ?> map) {
+            return map.get(name);
+        }
+
+        Field field = FIELDS.get(value.getClass()).get(name);
+        if (field == null) {
+            return null;
+        }
+
+        try {
+            return field.get(value);
+        } catch (IllegalAccessException ex) {
+            return null;
+        }
+    }
+
+}
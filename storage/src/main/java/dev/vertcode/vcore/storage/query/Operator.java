@@ -0,0 +1,37 @@
+package dev.vertcode.vcore.storage.query;
+
+/**
+ * The comparison of a {@link Condition}.
+ */
+public enum Operator {
+
+    /**
+     * The field equals the value.
+     */
+    EQUALS,
+    /**
+     * The field doesn't equal the value.
+     */
+    NOT_EQUALS,
+    /**
+     * The field is greater than the value.
+     */
+    GREATER_THAN,
+    /**
+     * The field is greater than or equal to the value.
+     */
+    GREATER_THAN_OR_EQUALS,
+    /**
+     * The field is less than the value.
+     */
+    LESS_THAN,
+    /**
+     * The field is less than or equal to the value.
+     */
+    LESS_THAN_OR_EQUALS,
+    /**
+     * The field equals one of the values.
+     */
+    IN
+
+}
@@ -0,0 +1,335 @@
+package dev.vertcode.vcore.storage.query;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A query for {@link dev.vertcode.vcore.storage.StorageObject}s, made of conditions that must all match, an
+ * optional sort and an optional limit.
+ * <p>
+ * Fields are referenced by the name they're stored with, nested fields are separated by dots. Backends push the
+ * query down where they can, like {@link dev.vertcode.vcore.storage.service.MongoStorageService} which
+ * translates it to server-side filters, other backends evaluate it while loading the values.
+ * <pre>{@code
+ * List<Profile> veterans = service.query(Query.create()
+ *         .greaterThan("level", 50)
+ *         .equal("clan", "red")
+ *         .sort("level", false)
+ *         .limit(10));
+ * }</pre>
+ */
+public class Query {
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private final Set<String> fields = new LinkedHashSet<>();
+    private String sortField;
+    private boolean ascending = true;
+    private int limit = 0;
+
+    /**
+     * Create a query that matches everything.
+     *
+     * @return The query
+     */
+    public static Query create() {
+        return new Query();
+    }
+
+    /**
+     * Only match values where a field equals a value.
+     *
+     * @param field The path of the field
+     * @param value The value
+     * @return This query
+     */
+    public Query equal(String field, @Nullable Object value) {
+        return where(field, Operator.EQUALS, value);
+    }
+
+    /**
+     * Only match values where a field doesn't equal a value.
+     *
+     * @param field The path of the field
+     * @param value The value
+     * @return This query
+     */
+    public Query notEqual(String field, @Nullable Object value) {
+        return where(field, Operator.NOT_EQUALS, value);
+    }
+
+    /**
+     * Only match values where a field is greater than a value.
+     *
+     * @param field The path of the field
+     * @param value The value
+     * @return This query
+     */
+    public Query greaterThan(String field, Object value) {
+        return where(field, Operator.GREATER_THAN, value);
+    }
+
+    /**
+     * Only match values where a field is greater than or equal to a value.
+     *
+     * @param field The path of the field
+     * @param value The value
+     * @return This query
+     */
+    public Query greaterThanOrEquals(String field, Object value) {
+        return where(field, Operator.GREATER_THAN_OR_EQUALS, value);
+    }
+
+    /**
+     * Only match values where a field is less than a value.
+     *
+     * @param field The path of the field
+     * @param value The value
+     * @return This query
+     */
+    public Query lessThan(String field, Object value) {
+        return where(field, Operator.LESS_THAN, value);
+    }
+
+    /**
+     * Only match values where a field is less than or equal to a value.
+     *
+     * @param field The path of the field
+     * @param value The value
+     * @return This query
+     */
+    public Query lessThanOrEquals(String field, Object value) {
+        return where(field, Operator.LESS_THAN_OR_EQUALS, value);
+    }
+
+    /**
+     * Only match values where a field is within a range.
+     *
+     * @param field The path of the field
+     * @param from  The lowest value, inclusive
+     * @param to    The highest value, inclusive
+     * @return This query
+     */
+    public Query between(String field, Object from, Object to) {
+        return greaterThanOrEquals(field, from).lessThanOrEquals(field, to);
+    }
+
+    /**
+     * Only match values where a field equals one of the values.
+     *
+     * @param field  The path of the field
+     * @param values The values
+     * @return This query
+     */
+    public Query in(String field, Collection<?> values) {
+        return where(field, Operator.IN, Collections.unmodifiableList(new ArrayList<>(values)));
+    }
+
+    /**
+     * Only match values where a field equals one of the values.
+     *
+     * @param field  The path of the field
+     * @param values The values
+     * @return This query
+     */
+    public Query in(String field, Object... values) {
+        return in(field, Arrays.asList(values));
+    }
+
+    /**
+     * Add a condition.
+     *
+     * @param field    The path of the field
+     * @param operator The {@link Operator}
+     * @param value    The value, a {@link Collection} for {@link Operator#IN}
+     * @return This query
+     */
+    public Query where(String field, Operator operator, @Nullable Object value) {
+        if (operator == Operator.IN && !(value instanceof Collection<?>)) {
+            throw new IllegalArgumentException("The value of an IN condition must be a collection.");
+        }
+
+        this.conditions.add(new Condition(field, operator, value));
+        return this;
+    }
+
+    /**
+     * Sort the matching values by a field.
+     *
+     * @param field     The path of the field
+     * @param ascending If the values should be sorted from low to high
+     * @return This query
+     */
+    public Query sort(String field, boolean ascending) {
+        this.sortField = field;
+        this.ascending = ascending;
+        return this;
+    }
+
+    /**
+     * Limit the amount of matching values.
+     *
+     * @param limit The maximum amount of values, or 0 for no limit
+     * @return This query
+     */
+    public Query limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit must be at least 0.");
+        }
+
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Only load some fields of the matching values, the other fields keep their default values.
+     * <p>
+     * Only backends that can load single fields apply this, the others load the whole values. Values loaded
+     * with a projection are incomplete, so they're never cached and must not be saved.
+     *
+     * @param fields The paths of the fields
+     * @return This query
+     */
+    public Query select(String... fields) {
+        this.fields.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    /**
+     * Check if a value matches all conditions.
+     *
+     * @param value The value
+     * @return If the value matches
+     */
+    public boolean matches(Object value) {
+        for (Condition condition : this.conditions) {
+            if (!condition.matches(FieldPaths.get(value, condition.field()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if a JSON object matches all conditions, without deserializing it.
+     *
+     * @param json The UTF-8 encoded JSON object
+     * @return If the JSON matches
+     * @throws IOException If the JSON couldn't be read
+     */
+    public boolean matchesJson(ByteBuffer json) throws IOException {
+        if (this.conditions.isEmpty()) {
+            return true;
+        }
+
+        Set<String> paths = new LinkedHashSet<>();
+        for (Condition condition : this.conditions) {
+            paths.add(condition.field());
+        }
+
+        Map<String, Object> values = FieldPaths.scan(json, paths);
+        for (Condition condition : this.conditions) {
+            if (!condition.matches(values.get(condition.field()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Apply the whole query to a stream of values, evaluated in memory.
+     *
+     * @param stream The stream of values
+     * @param <V>    The value type
+     * @return The stream of matching values, sorted and limited
+     */
+    public <V> Stream<V> apply(Stream<V> stream) {
+        return sortAndLimit(this.conditions.isEmpty() ? stream : stream.filter(this::matches));
+    }
+
+    /**
+     * Apply the sort and the limit of the query to a stream of values that already match.
+     *
+     * @param stream The stream of matching values
+     * @param <V>    The value type
+     * @return The sorted and limited stream
+     */
+    public <V> Stream<V> sortAndLimit(Stream<V> stream) {
+        if (this.sortField != null) {
+            stream = stream.sorted(getComparator());
+        }
+
+        if (this.limit > 0) {
+            stream = stream.limit(this.limit);
+        }
+
+        return stream;
+    }
+
+    /**
+     * Get a comparator that orders values by the sort field, ascending values without the field come last.
+     *
+     * @param <V> The value type
+     * @return The comparator
+     */
+    public <V> Comparator<V> getComparator() {
+        Comparator<V> comparator = (first, second) -> {
+            Object firstValue = Condition.normalize(FieldPaths.get(first, this.sortField));
+            Object secondValue = Condition.normalize(FieldPaths.get(second, this.sortField));
+            int comparison = Condition.compare(firstValue, secondValue);
+            if (comparison != Condition.UNORDERED) {
+                return comparison;
+            }
+
+            // Keep values without a comparable field together
+            return Boolean.compare(firstValue == null, secondValue == null);
+        };
+
+        return this.ascending ? comparator : comparator.reversed();
+    }
+
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(this.conditions);
+    }
+
+    public Set<String> getFields() {
+        return Collections.unmodifiableSet(this.fields);
+    }
+
+    public @Nullable String getSortField() {
+        return this.sortField;
+    }
+
+    public boolean isAscending() {
+        return this.ascending;
+    }
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    @Override
+    public String toString() {
+        return "Query{" +
+                "conditions=" + conditions +
+                ", fields=" + fields +
+                ", sortField='" + sortField + '\'' +
+                ", ascending=" + ascending +
+                ", limit=" + limit +
+                '}';
+    }
+
+}
@@ -0,0 +1,218 @@
+package dev.vertcode.vcore.storage.service;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * The write-ahead journal a {@link JSONStorageService} commits its batches to with {@link SyncMode#BATCH}.
+ * <p>
+ * A batch is appended as one write and made durable with a single force, after which the data files can be
+ * replaced without forcing each of them. The journal keeps the batches until a checkpoint has forced the data
+ * files, on startup the batches that are still in the journal are written to the data files again.
+ * <p>
+ * Every record holds the checksum, the file name length, the content length (-1 for a delete), the file name
+ * and the content. Appends must be serialized by the caller.
+ */
+final class BatchJournal {
+
+    static final String FILE_NAME = "batch.journal";
+
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+
+    private BatchJournal(Path path, FileChannel channel, long size) {
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Open the journal of a data folder, creating it if it doesn't exist.
+     *
+     * @param folder The data folder
+     * @return The journal
+     * @throws IOException If the journal couldn't be opened
+     */
+    static BatchJournal open(Path folder) throws IOException {
+        Path path = folder.resolve(FILE_NAME);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            return new BatchJournal(path, channel, channel.size());
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Encode a record.
+     *
+     * @param fileName The name of the data file
+     * @param content  The new content of the data file, or null if it's deleted
+     * @return The encoded record
+     */
+    static ByteBuffer encode(String fileName, byte @Nullable [] content) {
+        byte[] nameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+        int contentLength = content != null ? content.length : 0;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + nameBytes.length + contentLength);
+        record.putInt(checksum(nameBytes, content))
+                .putInt(nameBytes.length)
+                .putInt(content != null ? content.length : -1)
+                .put(nameBytes);
+        if (content != null) {
+            record.put(content);
+        }
+
+        return record.flip();
+    }
+
+    /**
+     * Append a batch of records as one write and force it to disk.
+     *
+     * @param records The encoded records
+     * @throws IOException If the batch couldn't be written or forced, nothing of it is committed then
+     */
+    void commit(List<ByteBuffer> records) throws IOException {
+        int batchSize = 0;
+        for (ByteBuffer record : records) {
+            batchSize += record.remaining();
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(batchSize);
+        records.forEach(record -> batch.put(record.duplicate()));
+        batch.flip();
+
+        long position = this.size;
+        try {
+            while (batch.hasRemaining()) {
+                this.channel.write(batch, position + batch.position());
+            }
+
+            this.channel.force(false);
+        } catch (IOException ex) {
+            // Drop the partially written batch, it was never committed
+            this.channel.truncate(position);
+            throw ex;
+        }
+
+        this.size = position + batchSize;
+    }
+
+    /**
+     * Read the records in the order they were committed.
+     * <p>
+     * The scan stops at the first record that is incomplete or has a wrong checksum, which can only be the
+     * tail of a batch whose force never finished.
+     *
+     * @param consumer The consumer that receives every valid record
+     * @throws IOException If the journal couldn't be read
+     */
+    void scan(RecordConsumer consumer) throws IOException {
+        long position = 0L;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path), SCAN_BUFFER_SIZE))) {
+            while (position + RECORD_HEADER_SIZE <= this.size) {
+                int checksum = input.readInt();
+                int nameLength = input.readInt();
+                int contentLength = input.readInt();
+                if (nameLength <= 0 || contentLength < -1) {
+                    break;
+                }
+
+                long recordSize = (long) RECORD_HEADER_SIZE + nameLength + Math.max(contentLength, 0);
+                if (position + recordSize > this.size) {
+                    break;
+                }
+
+                byte[] nameBytes = input.readNBytes(nameLength);
+                byte[] content = contentLength >= 0 ? input.readNBytes(contentLength) : null;
+                if (checksum(nameBytes, content) != checksum) {
+                    break;
+                }
+
+                consumer.accept(new String(nameBytes, StandardCharsets.UTF_8), content);
+                position += recordSize;
+            }
+        } catch (EOFException ignored) {
+            // The file is shorter than we thought, everything before the position is valid
+        }
+    }
+
+    /**
+     * Drop all records after their data files were forced.
+     *
+     * @throws IOException If the journal couldn't be truncated
+     */
+    void reset() throws IOException {
+        this.channel.truncate(0L);
+        this.channel.force(false);
+        this.size = 0L;
+    }
+
+    /**
+     * Close the journal.
+     *
+     * @throws IOException If the journal couldn't be closed
+     */
+    void close() throws IOException {
+        this.channel.close();
+    }
+
+    long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Calculate the checksum of a record.
+     *
+     * @param nameBytes The file name bytes
+     * @param content   The content bytes, or null for a delete
+     * @return The CRC32C of the file name and the content
+     */
+    private static int checksum(byte[] nameBytes, byte @Nullable [] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(nameBytes);
+        if (content != null) {
+            crc.update(content);
+        } else {
+            crc.update(-1);
+        }
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Receives the records found while scanning the journal.
+     */
+    @FunctionalInterface
+    interface RecordConsumer {
+
+        /**
+         * Called for every valid record.
+         *
+         * @param fileName The name of the data file
+         * @param content  The content of the data file, or null if it was deleted
+         * @throws IOException If the record couldn't be handled
+         */
+        void accept(String fileName, byte @Nullable [] content) throws IOException;
+
+    }
+}
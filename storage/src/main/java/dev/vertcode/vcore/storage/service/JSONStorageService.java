@@ -3,21 +3,77 @@ package dev.vertcode.vcore.storage.service;
 import dev.vertcode.vcore.storage.StorageObject;
 import dev.vertcode.vcore.storage.StorageService;
 import dev.vertcode.vcore.storage.annotation.StorageContext;
-import dev.vertcode.vcore.storage.util.StorageUtil;
+import dev.vertcode.vcore.storage.codec.StorageCodec;
+import dev.vertcode.vcore.storage.metrics.Operation;
+import dev.vertcode.vcore.storage.query.Query;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Writer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * A {@link StorageService} that stores every value in its own file.
+ * <p>
+ * The files are written with the {@link StorageCodec} of the service, which writes JSON by default. The file
+ * extension comes from {@link StorageCodec#getFileExtension()}.
+ * <p>
+ * Values are written to a temporary file first and then atomically renamed over the data file, so a crash
+ * or a concurrent read never sees a half written file. How the writes are forced to disk is decided by the
+ * {@link SyncMode}, by default they aren't forced at all. With {@link SyncMode#BATCH} every save or batch of
+ * saves is first committed to a journal with a single force, the data files themselves are only forced by a
+ * checkpoint once the journal has grown large enough. The journal is replayed on startup, so the committed
+ * writes survive a crash in between.
+ * <p>
+ * {@link #getAll(boolean)} streams the data folder and parses the files in batches on a {@link ForkJoinPool},
+ * the amount of batches in flight is bounded by the load parallelism. {@link #query(Query, boolean)} loads the
+ * same way, but with a JSON codec it checks the conditions on the raw JSON and only deserializes the files that
+ * match. {@link #getMany(Collection, boolean)} reads the files of the values that aren't cached in parallel on
+ * the same threads.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
 public class JSONStorageService<I, V extends StorageObject<I>> extends StorageService<I, V> {
 
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int LOAD_BATCH_SIZE = 64;
+    private static final long JOURNAL_CHECKPOINT_SIZE = 4L * 1024L * 1024L;
+
     private final File databaseFolder;
+    private SyncMode syncMode = SyncMode.NONE;
+    private int loadParallelism = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool loadPool;
+
+    // Guards the journal and the data files written since the last checkpoint
+    private final Object journalLock = new Object();
+    private final Set<Path> uncheckpointedFiles = new HashSet<>();
+    private BatchJournal journal;
 
     public JSONStorageService(Class<V> storageObjectClass, File databaseFolder) {
         super(storageObjectClass);
@@ -38,104 +94,718 @@ public class JSONStorageService<I, V extends StorageObject<I>> extends StorageSe
 
         // Get the data folder
         File dataFolder = getDataFolder();
-        if (dataFolder.exists()) {
+        if (!dataFolder.exists()) {
+            // Create the data folder
+            dataFolder.mkdirs();
+        } else {
+            removeTempFiles(dataFolder);
+            replayJournal(dataFolder);
+        }
+
+        startWarmup();
+    }
+
+    /**
+     * Remove the temporary files of writes that were interrupted by a crash.
+     *
+     * @param dataFolder The data folder
+     */
+    private void removeTempFiles(File dataFolder) {
+        try (DirectoryStream<Path> tempFiles = Files.newDirectoryStream(dataFolder.toPath(), "*" + TEMP_FILE_SUFFIX)) {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Write the batches that are still in the journal to the data files again, they might not have reached
+     * the disk before a crash.
+     *
+     * @param dataFolder The data folder
+     */
+    private void replayJournal(File dataFolder) {
+        Path folder = dataFolder.toPath();
+        if (!Files.exists(folder.resolve(BatchJournal.FILE_NAME))) {
             return;
         }
 
-        // Create the data folder
-        dataFolder.mkdirs();
+        synchronized (this.journalLock) {
+            try {
+                this.journal = BatchJournal.open(folder);
+                this.journal.scan((fileName, content) -> {
+                    Path dataFile = folder.resolve(fileName);
+                    if (content == null) {
+                        Files.deleteIfExists(dataFile);
+                    } else {
+                        moveIntoPlace(writeTempFile(dataFile, content, false), dataFile);
+                    }
+
+                    this.uncheckpointedFiles.add(dataFile);
+                });
+
+                checkpoint();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+
+        // Force the data files, so the next startup doesn't have to replay the journal
+        synchronized (this.journalLock) {
+            if (this.journal != null) {
+                try {
+                    checkpoint();
+                    this.journal.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+
+                this.journal = null;
+            }
+        }
+
+        // Stop the load threads
+        synchronized (this) {
+            if (this.loadPool != null) {
+                this.loadPool.shutdown();
+                this.loadPool = null;
+            }
+        }
     }
 
     @Override
     public @Nullable V get(I identifier, boolean cache) {
-        File dataFile = new File(getDataFolder(), identifier.toString() + ".json");
-        if (!dataFile.exists()) {
-            return null;
+        long start = System.nanoTime();
+        try {
+            if (!cache) {
+                return read(identifier);
+            }
+
+            return getOrLoad(identifier, () -> {
+                V value = read(identifier);
+                if (value == null) {
+                    return null;
+                }
+
+                // Add the value to the cache
+                cacheLoaded(value);
+                return value;
+            });
+        } finally {
+            getMetrics().record(Operation.GET, start);
         }
+    }
 
-        V value = readObject(dataFile);
-        if (!cache || value == null) {
-            return value;
+    /**
+     * Read a value from its data file.
+     *
+     * @param identifier The identifier of the value
+     * @return The value, or null if it doesn't exist
+     */
+    private @Nullable V read(I identifier) {
+        Path dataFile = getDataFile(identifier);
+        if (!Files.exists(dataFile)) {
+            return null;
         }
 
-        // Add the value to the cache
-        addToCache(value);
-        return value;
+        return readObject(dataFile);
     }
 
     @Override
     public Collection<V> getAll(boolean cache) {
-        File dataFolder = getDataFolder();
-        if (!dataFolder.exists()) {
-            return new ArrayList<>();
+        return loadAll(this::readObject, cache);
+    }
+
+    @Override
+    protected Map<I, V> loadMany(Collection<I> identifiers) {
+        Map<I, V> values = new HashMap<>();
+        if (identifiers.size() == 1) {
+            I identifier = identifiers.iterator().next();
+            V value = read(identifier);
+            if (value != null) {
+                values.put(identifier, value);
+            }
+
+            return values;
         }
 
-        File[] dataFiles = dataFolder.listFiles();
-        if (dataFiles == null) {
-            return new ArrayList<>();
+        // Spread the files over the load threads
+        List<Path> dataFiles = new ArrayList<>(identifiers.size());
+        for (I identifier : identifiers) {
+            dataFiles.add(getDataFile(identifier));
         }
 
-        List<V> storageObjects = new ArrayList<>();
-        for (File dataFile : dataFiles) {
-            if (!dataFile.getName().endsWith(".json")) {
-                continue;
-            }
+        Function<Path, V> reader = dataFile -> Files.exists(dataFile) ? readObject(dataFile) : null;
+        int batchSize = Math.max(1, (dataFiles.size() + this.loadParallelism - 1) / this.loadParallelism);
+
+        ForkJoinPool loadPool = getLoadPool();
+        List<ForkJoinTask<List<V>>> loadTasks = new ArrayList<>();
+        for (int i = 0; i < dataFiles.size(); i += batchSize) {
+            List<Path> batch = dataFiles.subList(i, Math.min(i + batchSize, dataFiles.size()));
+            loadTasks.add(loadPool.submit(readBatch(batch, reader)));
+        }
 
-            V value = readObject(dataFile);
-            if (value == null) {
-                continue;
+        for (ForkJoinTask<List<V>> loadTask : loadTasks) {
+            for (V value : loadTask.join()) {
+                values.put(value.getIdentifier(), value);
             }
+        }
 
-            // Add the value to the list
-            storageObjects.add(value);
+        return values;
+    }
 
-            if (!cache) {
-                continue;
+    @Override
+    public List<V> query(Query query, boolean cache) {
+        long start = System.nanoTime();
+        try {
+            // With JSON the conditions are checked before deserializing, other codecs are checked on the values
+            Function<Path, V> reader = getCodec().isJson() ? file -> readMatching(file, query) : file -> {
+                V value = readObject(file);
+                return value != null && query.matches(value) ? value : null;
+            };
+
+            List<V> values = query.sortAndLimit(loadAll(reader, false).stream())
+                    .collect(Collectors.toCollection(ArrayList::new));
+            // Values that are cached already keep their instance
+            if (cache) {
+                values.replaceAll(this::cacheLoadedIfAbsent);
             }
 
-            // Add the value to the cache
-            addToCache(value);
+            return values;
+        } finally {
+            getMetrics().record(Operation.QUERY, start);
         }
+    }
 
-        return storageObjects;
+    @Override
+    public Stream<V> stream(boolean cache) {
+        Path dataFolder = getDataFolder().toPath();
+        if (!Files.isDirectory(dataFolder)) {
+            return Stream.empty();
+        }
+
+        DirectoryStream<Path> dataFiles;
+        try {
+            dataFiles = Files.newDirectoryStream(dataFolder, getDataFileGlob());
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return Stream.empty();
+        }
+
+        // The files are only read while the stream is consumed
+        Stream<V> stream = StreamSupport.stream(dataFiles.spliterator(), false)
+                .onClose(() -> {
+                    try {
+                        dataFiles.close();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                })
+                .map(this::readObject)
+                .filter(Objects::nonNull);
+        if (!cache) {
+            return stream;
+        }
+
+        // Add the values to the cache while they're streamed
+        return stream.map(value -> {
+            cacheLoaded(value);
+            return value;
+        });
     }
 
     @Override
     public void save(V value) {
-        File dataFile = new File(getDataFolder(), value.getIdentifier() + ".json");
+        long start = System.nanoTime();
+        try {
+            if (this.syncMode == SyncMode.BATCH) {
+                writeBatch(List.of(value));
+                return;
+            }
 
-        try (Writer writer = new FileWriter(dataFile)) {
-            StorageUtil.getGson().toJson(value, writer);
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            Path tempFile = null;
+            try {
+                boolean sync = this.syncMode == SyncMode.ALWAYS;
+
+                byte[] encoded = getCodec().encode(value);
+                Path dataFile = getDataFile(value.getIdentifier());
+                tempFile = writeTempFile(dataFile, encoded, sync);
+                moveIntoPlace(tempFile, dataFile);
+                onWrite(value.getIdentifier());
+                if (sync) {
+                    syncDataFolder();
+                }
+
+                markSaved(value, encoded);
+            } catch (Exception ex) {
+                // Make sure the value is written again on the next save
+                value.markDirty();
+                deleteTempFile(tempFile);
+                ex.printStackTrace();
+            }
+        } finally {
+            getMetrics().record(Operation.SAVE, start);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<V> values) {
+        long start = System.nanoTime();
+        try {
+            if (this.syncMode != SyncMode.BATCH) {
+                super.saveAll(values);
+                return;
+            }
+
+            writeBatch(values);
+        } finally {
+            getMetrics().record(Operation.SAVE_ALL, start);
         }
     }
 
     @Override
     public void delete(V value) {
-        I identifier = value.getIdentifier();
+        long start = System.nanoTime();
+        try {
+            I identifier = value.getIdentifier();
+            if (this.syncMode == SyncMode.BATCH) {
+                deleteBatched(identifier);
+                return;
+            }
+
+            // Remove the value from the cache
+            removeFromCache(identifier);
+            onWrite(identifier);
+
+            // Delete the data file
+            try {
+                Files.deleteIfExists(getDataFile(identifier));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        } finally {
+            getMetrics().record(Operation.DELETE, start);
+        }
+    }
+
+    /**
+     * Set the amount of threads that parse files in {@link #getAll(boolean)}, defaults to the amount of processors.
+     *
+     * @param loadParallelism The amount of load threads
+     */
+    public synchronized void setLoadParallelism(int loadParallelism) {
+        if (loadParallelism < 1) {
+            throw new IllegalArgumentException("The load parallelism must be at least 1.");
+        }
+
+        this.loadParallelism = loadParallelism;
+
+        // The pool is recreated with the new parallelism when it's needed
+        if (this.loadPool != null) {
+            this.loadPool.shutdown();
+            this.loadPool = null;
+        }
+    }
+
+    /**
+     * Set when writes are forced to disk, defaults to {@link SyncMode#NONE}.
+     *
+     * @param syncMode The {@link SyncMode}
+     */
+    public void setSyncMode(SyncMode syncMode) {
+        synchronized (this.journalLock) {
+            // The other modes don't write to the journal, so it must not replay older writes over theirs
+            if (this.syncMode == SyncMode.BATCH && syncMode != SyncMode.BATCH && this.journal != null) {
+                try {
+                    checkpoint();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            this.syncMode = syncMode;
+        }
+    }
+
+    /**
+     * Commit a batch of values to the journal with a single force, then replace their data files without
+     * forcing them.
+     * <p>
+     * The values are encoded and written to their temporary files before the journal lock is taken, so only
+     * the commit and the renames are serialized.
+     *
+     * @param values The values you want to save
+     */
+    private void writeBatch(Collection<V> values) {
+        List<PreparedWrite<V>> writes = new ArrayList<>(values.size());
+        List<ByteBuffer> records = new ArrayList<>(values.size());
+        for (V value : values) {
+            Path tempFile = null;
+            try {
+                byte[] encoded = getCodec().encode(value);
+                Path dataFile = getDataFile(value.getIdentifier());
+                tempFile = writeTempFile(dataFile, encoded, false);
+                records.add(BatchJournal.encode(dataFile.getFileName().toString(), encoded));
+                writes.add(new PreparedWrite<>(value, dataFile, tempFile, encoded));
+            } catch (Exception ex) {
+                value.markDirty();
+                deleteTempFile(tempFile);
+                ex.printStackTrace();
+            }
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        synchronized (this.journalLock) {
+            // The sync mode changed while the files were written, the journal must not replay them over later writes
+            if (this.syncMode == SyncMode.BATCH) {
+                try {
+                    getJournal().commit(records);
+                } catch (IOException ex) {
+                    // Nothing of the batch was committed, so write the values again next time
+                    for (PreparedWrite<V> write : writes) {
+                        write.value().markDirty();
+                        deleteTempFile(write.tempFile());
+                    }
+
+                    ex.printStackTrace();
+                    return;
+                }
+            }
+
+            // The batch is durable now, the data files catch up without being forced
+            List<I> writtenIdentifiers = new ArrayList<>(writes.size());
+            for (PreparedWrite<V> write : writes) {
+                V value = write.value();
+                try {
+                    moveIntoPlace(write.tempFile(), write.dataFile());
+                    this.uncheckpointedFiles.add(write.dataFile());
+                    markSaved(value, write.encoded());
+                    writtenIdentifiers.add(value.getIdentifier());
+                } catch (Exception ex) {
+                    value.markDirty();
+                    deleteTempFile(write.tempFile());
+                    ex.printStackTrace();
+                }
+            }
+
+            // The written values replace what the caches knew about their identifiers
+            onWrite(writtenIdentifiers);
+            if (this.journal != null) {
+                checkpointIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * Commit a delete to the journal, then delete the data file.
+     *
+     * @param identifier The identifier of the value
+     */
+    private void deleteBatched(I identifier) {
+        synchronized (this.journalLock) {
+            Path dataFile = getDataFile(identifier);
+            try {
+                getJournal().commit(List.of(BatchJournal.encode(dataFile.getFileName().toString(), null)));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return;
+            }
+
+            // Remove the value from the cache
+            removeFromCache(identifier);
+            onWrite(identifier);
+
+            // Delete the data file
+            try {
+                Files.deleteIfExists(dataFile);
+                this.uncheckpointedFiles.add(dataFile);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+
+            checkpointIfNeeded();
+        }
+    }
+
+    /**
+     * Get the journal, opening it if needed. Must be called while holding the journal lock.
+     *
+     * @return The journal
+     * @throws IOException If the journal couldn't be opened
+     */
+    private BatchJournal getJournal() throws IOException {
+        if (this.journal == null) {
+            Path folder = getDataFolder().toPath();
+            boolean created = !Files.exists(folder.resolve(BatchJournal.FILE_NAME));
+
+            this.journal = BatchJournal.open(folder);
+            if (created) {
+                // The journal itself must survive a crash before anything is committed to it
+                syncDataFolder();
+            }
+        }
+
+        return this.journal;
+    }
+
+    /**
+     * Run a checkpoint when the journal has grown large enough. Must be called while holding the journal lock.
+     */
+    private void checkpointIfNeeded() {
+        if (this.journal.getSize() < JOURNAL_CHECKPOINT_SIZE) {
+            return;
+        }
+
+        try {
+            checkpoint();
+        } catch (IOException ex) {
+            // The journal is kept, the checkpoint is tried again after the next batch
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Force the data files written since the last checkpoint and the data folder, then empty the journal.
+     * Must be called while holding the journal lock.
+     *
+     * @throws IOException If a data file or the data folder couldn't be forced
+     */
+    private void checkpoint() throws IOException {
+        for (Path dataFile : this.uncheckpointedFiles) {
+            try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (NoSuchFileException ignored) {
+                // The file was deleted, the folder sync below makes that durable
+            }
+        }
+
+        syncDataFolder();
+        this.uncheckpointedFiles.clear();
+        this.journal.reset();
+    }
+
+    /**
+     * Write a value to a new temporary file next to its data file.
+     *
+     * @param dataFile The data file of the value
+     * @param encoded  The encoded value
+     * @param force    If the file should be forced to disk
+     * @return The temporary file
+     * @throws IOException If the file couldn't be written
+     */
+    private Path writeTempFile(Path dataFile, byte[] encoded, boolean force) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        Path tempFile = Files.createTempFile(dataFile.getParent(), dataFile.getFileName() + ".", TEMP_FILE_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            if (force) {
+                channel.force(false);
+            }
+        } catch (IOException ex) {
+            deleteTempFile(tempFile);
+            throw ex;
+        }
 
-        // Remove the value from the cache
-        removeFromCache(identifier);
+        return tempFile;
+    }
+
+    /**
+     * Atomically replace a data file with a temporary file.
+     *
+     * @param tempFile The temporary file
+     * @param dataFile The data file
+     * @throws IOException If the file couldn't be moved
+     */
+    private void moveIntoPlace(Path tempFile, Path dataFile) throws IOException {
+        try {
+            Files.move(tempFile, dataFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-        File dataFile = new File(getDataFolder(), identifier + ".json");
-        if (!dataFile.exists()) {
+    /**
+     * Force the directory entries of the data folder to disk, so renames survive a crash.
+     *
+     * @throws IOException If the data folder couldn't be opened
+     */
+    private void syncDataFolder() throws IOException {
+        try (FileChannel channel = FileChannel.open(getDataFolder().toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // Not every platform allows syncing a directory, the file itself is already on disk there
+            if (!System.getProperty("os.name", "").toLowerCase().contains("win")) {
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Delete a temporary file, ignoring any errors.
+     *
+     * @param tempFile The temporary file, may be null
+     */
+    private void deleteTempFile(@Nullable Path tempFile) {
+        if (tempFile == null) {
             return;
         }
 
-        // Delete the data file
-        dataFile.delete();
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Get the data file of an identifier.
+     *
+     * @param identifier The identifier
+     * @return The data file
+     */
+    private Path getDataFile(I identifier) {
+        return new File(getDataFolder(), identifier + "." + getCodec().getFileExtension()).toPath();
+    }
+
+    /**
+     * Get the glob that matches all data files.
+     *
+     * @return The glob
+     */
+    private String getDataFileGlob() {
+        return "*." + getCodec().getFileExtension();
+    }
+
+    /**
+     * Get the {@link ForkJoinPool} that parses files, creating it if needed.
+     *
+     * @return The load pool
+     */
+    private synchronized ForkJoinPool getLoadPool() {
+        if (this.loadPool == null) {
+            this.loadPool = new ForkJoinPool(this.loadParallelism);
+        }
+
+        return this.loadPool;
+    }
+
+    /**
+     * Read all data files in batches on the load pool.
+     *
+     * @param reader The function that reads a data file, returning null to skip it
+     * @param cache  If the values should be cached
+     * @return The values that were read
+     */
+    private List<V> loadAll(Function<Path, V> reader, boolean cache) {
+        Path dataFolder = getDataFolder().toPath();
+        if (!Files.isDirectory(dataFolder)) {
+            return new ArrayList<>();
+        }
+
+        ForkJoinPool loadPool = getLoadPool();
+        Deque<ForkJoinTask<List<V>>> loadTasks = new ArrayDeque<>();
+        List<V> storageObjects = new ArrayList<>();
+
+        try (DirectoryStream<Path> dataFiles = Files.newDirectoryStream(dataFolder, getDataFileGlob())) {
+            List<Path> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            for (Path dataFile : dataFiles) {
+                batch.add(dataFile);
+                if (batch.size() < LOAD_BATCH_SIZE) {
+                    continue;
+                }
+
+                loadTasks.add(loadPool.submit(readBatch(batch, reader)));
+                batch = new ArrayList<>(LOAD_BATCH_SIZE);
+
+                // Bound the amount of batches in flight, so huge folders don't pile up in memory
+                while (loadTasks.size() > this.loadParallelism * 2) {
+                    collect(loadTasks.poll().join(), storageObjects, cache);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                loadTasks.add(loadPool.submit(readBatch(batch, reader)));
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+
+        // Wait for the remaining batches
+        while (!loadTasks.isEmpty()) {
+            collect(loadTasks.poll().join(), storageObjects, cache);
+        }
+
+        return storageObjects;
+    }
+
+    /**
+     * Create a task that reads a batch of files.
+     *
+     * @param dataFiles The files you want to read
+     * @param reader    The function that reads a data file, returning null to skip it
+     * @return The task, returning the values that could be read
+     */
+    private ForkJoinTask<List<V>> readBatch(List<Path> dataFiles, Function<Path, V> reader) {
+        return ForkJoinTask.adapt(() -> {
+            List<V> values = new ArrayList<>(dataFiles.size());
+            for (Path dataFile : dataFiles) {
+                V value = reader.apply(dataFile);
+                if (value == null) {
+                    continue;
+                }
+
+                values.add(value);
+            }
+
+            return values;
+        });
+    }
+
+    /**
+     * Collect the values of a loaded batch.
+     *
+     * @param values         The values of the batch
+     * @param storageObjects The list the values are added to
+     * @param cache          If the values should be cached
+     */
+    private void collect(List<V> values, List<V> storageObjects, boolean cache) {
+        // Add the values to the list
+        storageObjects.addAll(values);
+
+        if (!cache) {
+            return;
+        }
+
+        // Add the values to the cache
+        for (V value : values) {
+            cacheLoaded(value);
+        }
     }
 
     /**
      * Reads an object from a file.
      *
      * @param file The file to read from
-     * @return The object read from the file
+     * @return The object read from the file, or null if it couldn't be read
      */
-    private V readObject(File file) {
-        try (FileReader reader = new FileReader(file)) {
-            return StorageUtil.getGson().fromJson(reader, this.storageObjectClass);
+    private @Nullable V readObject(Path file) {
+        try {
+            return getCodec().decode(readFile(file), this.storageObjectClass);
+        } catch (NoSuchFileException ignored) {
+            // The file was deleted after we found it
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -143,6 +813,51 @@ public class JSONStorageService<I, V extends StorageObject<I>> extends StorageSe
         return null;
     }
 
+    /**
+     * Reads an object from a JSON file, if the JSON matches a {@link Query}.
+     *
+     * @param file  The file to read from
+     * @param query The query the JSON must match
+     * @return The object read from the file, or null if it doesn't match or couldn't be read
+     */
+    private @Nullable V readMatching(Path file, Query query) {
+        try {
+            ByteBuffer buffer = readFile(file);
+            if (!query.matchesJson(buffer)) {
+                return null;
+            }
+
+            return getCodec().decode(buffer, this.storageObjectClass);
+        } catch (NoSuchFileException ignored) {
+            // The file was deleted after we found it
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Read a whole file.
+     *
+     * @param file The file to read
+     * @return A buffer with the contents of the file
+     * @throws IOException If the file couldn't be read
+     */
+    private ByteBuffer readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Read the whole file in as few reads as possible
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+
+            return buffer.flip();
+        }
+    }
+
     /**
      * Get the data folder of the {@link StorageService}.
      *
@@ -156,4 +871,16 @@ public class JSONStorageService<I, V extends StorageObject<I>> extends StorageSe
 
         return new File(this.databaseFolder, storageContext.collectionName());
     }
+
+    /**
+     * A value of a batch whose temporary file is written, but not committed yet.
+     *
+     * @param value    The value
+     * @param dataFile The data file of the value
+     * @param tempFile The temporary file that replaces the data file
+     * @param encoded  The encoded value
+     * @param <V>      The value type
+     */
+    private record PreparedWrite<V>(V value, Path dataFile, Path tempFile, byte[] encoded) {
+    }
 }
@@ -0,0 +1,461 @@
+package dev.vertcode.vcore.storage.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * A single append-only segment file of a {@link SegmentLogStorageService}.
+ * <p>
+ * A segment starts with a small file header, followed by the records. Every record has a fixed size header
+ * holding the checksum, the record type and the key and value lengths, followed by the key and the value.
+ * Only the newest segment is appended to, older segments are sealed and never change until they're
+ * compacted away. The header holds a sealed flag that is only set after the records were forced to disk,
+ * so a segment without it can have lost writes in a crash.
+ * <p>
+ * Reads are positional and can run concurrently, appends must be serialized by the caller.
+ */
+final class LogSegment {
+
+    static final byte TYPE_PUT = 1;
+    static final byte TYPE_DELETE = 2;
+    static final int FILE_HEADER_SIZE = 12;
+    static final int RECORD_HEADER_SIZE = 13;
+
+    private static final int MAGIC = 0x564C4F47;
+    private static final int VERSION = 2;
+    private static final int FLAGS_POSITION = 8;
+    private static final int FLAG_SEALED = 1;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final String FILE_SUFFIX = ".log";
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private volatile long size;
+    private volatile boolean sealed;
+
+    private LogSegment(int id, Path path, FileChannel channel, long size, boolean sealed) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.sealed = sealed;
+    }
+
+    /**
+     * Create a new, empty segment.
+     *
+     * @param folder The folder the segment is created in
+     * @param id     The id of the segment
+     * @return The segment
+     * @throws IOException If the segment couldn't be created
+     */
+    static LogSegment create(Path folder, int id) throws IOException {
+        Path path = folder.resolve(getFileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            writeFileHeader(channel);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+
+        return new LogSegment(id, path, channel, FILE_HEADER_SIZE, false);
+    }
+
+    /**
+     * Open an existing segment.
+     *
+     * @param path The segment file
+     * @param id   The id of the segment
+     * @return The segment
+     * @throws IOException If the segment couldn't be opened or isn't a segment file
+     */
+    static LogSegment open(Path path, int id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            // The segment was created right before a crash, write the header again
+            if (channel.size() < FILE_HEADER_SIZE) {
+                channel.truncate(0L);
+                writeFileHeader(channel);
+                return new LogSegment(id, path, channel, FILE_HEADER_SIZE, false);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            readFully(channel, header, 0L);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a segment file.");
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has an unknown segment version " + version + ".");
+            }
+
+            boolean sealed = (header.getInt() & FLAG_SEALED) != 0;
+            return new LogSegment(id, path, channel, channel.size(), sealed);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Encode a record.
+     *
+     * @param type  The record type, {@link #TYPE_PUT} or {@link #TYPE_DELETE}
+     * @param key   The key of the record
+     * @param value The value of the record, empty for a delete
+     * @return The encoded record, ready to be appended
+     */
+    static ByteBuffer encode(byte type, String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + value.length);
+        record.putInt(checksum(type, keyBytes, value))
+                .put(type)
+                .putInt(keyBytes.length)
+                .putInt(value.length)
+                .put(keyBytes)
+                .put(value);
+
+        return record.flip();
+    }
+
+    /**
+     * Get the id of the segment file.
+     *
+     * @param path The segment file
+     * @return The id, or -1 if the file isn't named like a segment
+     */
+    static int parseId(Path path) {
+        String fileName = path.getFileName().toString();
+        if (!fileName.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the glob that matches all segment files.
+     *
+     * @return The glob
+     */
+    static String getFileGlob() {
+        return "*" + FILE_SUFFIX;
+    }
+
+    /**
+     * Scan the records of the segment in the order they were appended.
+     * <p>
+     * Only the record headers and keys are read, the values are skipped unless the checksums are verified.
+     * The scan stops at the first record that is incomplete or invalid.
+     *
+     * @param verifyChecksums If the checksums of the records should be verified
+     * @param consumer        The consumer that receives every valid record
+     * @return The position right after the last valid record
+     * @throws IOException If the segment couldn't be read
+     */
+    long scan(boolean verifyChecksums, RecordConsumer consumer) throws IOException {
+        long end = this.size;
+        long position = FILE_HEADER_SIZE;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path), SCAN_BUFFER_SIZE))) {
+            input.skipNBytes(FILE_HEADER_SIZE);
+
+            while (position + RECORD_HEADER_SIZE <= end) {
+                int checksum = input.readInt();
+                byte type = input.readByte();
+                int keyLength = input.readInt();
+                int valueLength = input.readInt();
+                if ((type != TYPE_PUT && type != TYPE_DELETE) || keyLength <= 0 || valueLength < 0) {
+                    break;
+                }
+
+                long recordSize = (long) RECORD_HEADER_SIZE + keyLength + valueLength;
+                if (position + recordSize > end) {
+                    break;
+                }
+
+                byte[] keyBytes = input.readNBytes(keyLength);
+                if (verifyChecksums) {
+                    byte[] value = input.readNBytes(valueLength);
+                    if (checksum(type, keyBytes, value) != checksum) {
+                        break;
+                    }
+                } else {
+                    input.skipNBytes(valueLength);
+                }
+
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                consumer.accept(key, new Location(this, type, position, (int) recordSize, valueLength));
+                position += recordSize;
+            }
+        } catch (EOFException ignored) {
+            // The file is shorter than we thought, everything before the position is valid
+        }
+
+        return position;
+    }
+
+    /**
+     * Append a record to the end of the segment.
+     *
+     * @param record The encoded record
+     * @return The {@link Location} of the appended record
+     * @throws IOException If the record couldn't be written
+     */
+    Location append(ByteBuffer record) throws IOException {
+        long position = this.size;
+        int recordSize = record.remaining();
+        byte type = record.get(record.position() + 4);
+        int valueLength = record.getInt(record.position() + 9);
+
+        try {
+            while (record.hasRemaining()) {
+                this.channel.write(record, position + recordSize - record.remaining());
+            }
+        } catch (IOException ex) {
+            // Drop the partially written record, so the next append doesn't leave garbage behind
+            this.channel.truncate(position);
+            throw ex;
+        }
+
+        this.size = position + recordSize;
+        return new Location(this, type, position, recordSize, valueLength);
+    }
+
+    /**
+     * Read the value of a record.
+     *
+     * @param location The {@link Location} of the record
+     * @return The value bytes
+     * @throws IOException If the value couldn't be read, a
+     *                     {@link java.nio.channels.ClosedChannelException} if the segment was closed
+     */
+    byte[] readValue(Location location) throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(location.valueLength());
+        readFully(this.channel, value, location.position() + location.size() - location.valueLength());
+        return value.array();
+    }
+
+    /**
+     * Read a whole record, so it can be appended to another segment.
+     *
+     * @param location The {@link Location} of the record
+     * @return The encoded record
+     * @throws IOException If the record couldn't be read
+     */
+    ByteBuffer readRecord(Location location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.size());
+        readFully(this.channel, record, location.position());
+        return record.flip();
+    }
+
+    /**
+     * Force the segment to disk.
+     *
+     * @throws IOException If the segment couldn't be forced
+     */
+    void force() throws IOException {
+        this.channel.force(false);
+    }
+
+    /**
+     * Mark the segment as sealed, the records must have been forced to disk before.
+     * <p>
+     * The flag itself isn't forced, if it's lost in a crash the segment is verified again on the next startup.
+     *
+     * @throws IOException If the flag couldn't be written
+     */
+    void seal() throws IOException {
+        if (this.sealed) {
+            return;
+        }
+
+        ByteBuffer flags = ByteBuffer.allocate(Integer.BYTES).putInt(FLAG_SEALED).flip();
+        while (flags.hasRemaining()) {
+            this.channel.write(flags, FLAGS_POSITION + flags.position());
+        }
+
+        this.sealed = true;
+    }
+
+    /**
+     * Cut off the segment at a position, dropping everything after it.
+     *
+     * @param position The new size of the segment
+     * @throws IOException If the segment couldn't be truncated
+     */
+    void truncate(long position) throws IOException {
+        this.channel.truncate(position);
+        this.size = position;
+    }
+
+    /**
+     * Close the segment, reads that are still running fail with a {@link java.nio.channels.ClosedChannelException}.
+     *
+     * @throws IOException If the segment couldn't be closed
+     */
+    void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Close the segment and delete its file.
+     *
+     * @throws IOException If the segment couldn't be deleted
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(this.path);
+    }
+
+    /**
+     * Add to the amount of bytes of records that are still the latest record of their key.
+     *
+     * @param delta The amount of bytes, negative when a record was superseded
+     */
+    void addLiveBytes(long delta) {
+        this.liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Get the part of the records that are still the latest record of their key.
+     *
+     * @return The live ratio, between 0 and 1
+     */
+    double getLiveRatio() {
+        long recordBytes = this.size - FILE_HEADER_SIZE;
+        if (recordBytes <= 0L) {
+            return 0D;
+        }
+
+        return (double) this.liveBytes.get() / recordBytes;
+    }
+
+    int getId() {
+        return this.id;
+    }
+
+    long getSize() {
+        return this.size;
+    }
+
+    boolean isSealed() {
+        return this.sealed;
+    }
+
+    /**
+     * Get the file name of a segment.
+     *
+     * @param id The id of the segment
+     * @return The file name
+     */
+    private static String getFileName(int id) {
+        return String.format("%010d%s", id, FILE_SUFFIX);
+    }
+
+    /**
+     * Write the file header to an empty segment.
+     *
+     * @param channel The channel of the segment
+     * @throws IOException If the header couldn't be written
+     */
+    private static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, FILE_HEADER_SIZE - header.remaining());
+        }
+    }
+
+    /**
+     * Fill a buffer from a position of a channel.
+     *
+     * @param channel  The channel you want to read
+     * @param buffer   The buffer you want to fill
+     * @param position The position to read from
+     * @throws IOException If the channel ended before the buffer was filled
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of segment.");
+            }
+        }
+    }
+
+    /**
+     * Calculate the checksum of a record.
+     *
+     * @param type  The record type
+     * @param key   The key bytes
+     * @param value The value bytes
+     * @return The CRC32C of the type, key and value
+     */
+    private static int checksum(byte type, byte[] key, byte[] value) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(key);
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The location of a record inside a segment.
+     *
+     * @param segment     The segment holding the record
+     * @param type        The record type
+     * @param position    The position of the record header
+     * @param size        The size of the whole record
+     * @param valueLength The length of the value
+     */
+    record Location(LogSegment segment, byte type, long position, int size, int valueLength) {
+
+        /**
+         * Orders locations the way they're laid out on disk.
+         */
+        static final Comparator<Location> DISK_ORDER = Comparator.<Location>comparingInt(location -> location.segment().getId())
+                .thenComparingLong(Location::position);
+
+    }
+
+    /**
+     * Receives the records found while scanning a segment.
+     */
+    @FunctionalInterface
+    interface RecordConsumer {
+
+        /**
+         * Called for every valid record.
+         *
+         * @param key      The key of the record
+         * @param location The {@link Location} of the record
+         * @throws IOException If the record couldn't be handled
+         */
+        void accept(String key, Location location) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,1046 @@
+package dev.vertcode.vcore.storage.service;
+
+import dev.vertcode.vcore.storage.StorageObject;
+import dev.vertcode.vcore.storage.StorageService;
+import dev.vertcode.vcore.storage.annotation.StorageContext;
+import dev.vertcode.vcore.storage.metrics.Operation;
+import dev.vertcode.vcore.storage.util.StorageUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A {@link StorageService} for large, mostly read collections that keeps its data in memory-mapped files.
+ * <p>
+ * A collection is stored in two files named after {@link StorageContext#collectionName()}. The data file is
+ * an append-only list of records, the index file is a fixed-layout open addressing hash table that maps the
+ * hash of an identifier to the position of its latest record. Both files are mapped with
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)}, so a {@link #get(Object, boolean)} is a probe of
+ * the mapped index followed by deserializing straight from the mapped data, without system calls or copying
+ * the record to the heap first. Startup only maps the files, the data isn't read.
+ * <p>
+ * Reads are optimistic and never block each other, writes are serialized and make a concurrent read retry
+ * under a read lock. A save appends a new record, so updates leave dead records behind until the data file is
+ * compacted, which happens on startup once the dead part exceeds the compaction threshold or when
+ * {@link #compact()} is called.
+ * <p>
+ * The index is marked clean on {@link #shutdown()}. If the service wasn't shut down cleanly the index is
+ * rebuilt from the data file on the next startup, records with a wrong checksum end the data there.
+ * <p>
+ * A single collection can't grow beyond 2 GiB of data, which is the limit of a single mapping.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+public class MappedStorageService<I, V extends StorageObject<I>> extends StorageService<I, V> {
+
+    private static final String DATA_FILE_SUFFIX = ".dat";
+    private static final String INDEX_FILE_SUFFIX = ".idx";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private static final int DATA_MAGIC = 0x564D4454;
+    private static final int INDEX_MAGIC = 0x564D4958;
+    private static final int VERSION = 1;
+
+    // The data file starts with the magic and the version, followed by the records
+    private static final int DATA_HEADER_SIZE = 8;
+    // A record is the checksum, the key length, the value length (-1 for a delete), the key and the value
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    // The index file starts with the magic, version, slot count, live count, used slots, clean flag, data size and dead bytes
+    private static final int INDEX_HEADER_SIZE = 40;
+    // A slot is the hash of the key, the record position, the record length and the slot state
+    private static final int SLOT_SIZE = 24;
+
+    private static final int SLOT_EMPTY = 0;
+    private static final int SLOT_LIVE = 1;
+    private static final int SLOT_DELETED = 2;
+
+    private static final int MIN_SLOT_COUNT = 1024;
+    private static final double MAX_LOAD_FACTOR = 0.5D;
+    private static final int MIN_DATA_CAPACITY = 64 * 1024;
+
+    private final File databaseFolder;
+    private final StampedLock lock = new StampedLock();
+
+    private SyncMode syncMode = SyncMode.BATCH;
+    private double compactionThreshold = 0.5D;
+
+    private FileChannel dataChannel;
+    private volatile MappedByteBuffer dataBuffer;
+    private volatile MappedByteBuffer indexBuffer;
+
+    // The state of the index header, only changed while holding the write lock
+    private int slotCount;
+    private int liveCount;
+    private int usedSlots;
+    private boolean clean;
+    private long dataSize;
+    private long deadBytes;
+
+    public MappedStorageService(Class<V> storageObjectClass, File databaseFolder) {
+        super(storageObjectClass);
+        this.databaseFolder = databaseFolder;
+    }
+
+    public MappedStorageService(Class<V> storageObjectClass, Long cacheTime, TimeUnit cacheTimeUnit, File databaseFolder) {
+        super(storageObjectClass, cacheTime, cacheTimeUnit);
+        this.databaseFolder = databaseFolder;
+    }
+
+    @Override
+    public void startup() {
+        // If the database folder doesn't exist, create it.
+        if (!this.databaseFolder.exists()) {
+            this.databaseFolder.mkdirs();
+        }
+
+        long stamp = this.lock.writeLock();
+        try {
+            open();
+
+            // Drop the dead records if they take up too much space
+            if (this.deadBytes > (this.dataSize - DATA_HEADER_SIZE) * this.compactionThreshold) {
+                compactLocked();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Couldn't open the mapped files of " + getDataFile() + ".", ex);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+
+        startWarmup();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.dataChannel == null) {
+                return;
+            }
+
+            // Everything is on disk now, so the next startup can trust the index
+            this.dataBuffer.force();
+            this.clean = true;
+            writeIndexHeader(this.indexBuffer);
+            this.indexBuffer.force();
+
+            this.dataChannel.close();
+            this.dataChannel = null;
+            this.dataBuffer = null;
+            this.indexBuffer = null;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Close the data file without saving the cache, forcing the mappings or marking the index as clean, like a
+     * crash would. The next service opened on the folder has to rebuild the index.
+     */
+    void close() {
+        release();
+
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.dataChannel == null) {
+                return;
+            }
+
+            this.dataChannel.close();
+            this.dataChannel = null;
+            this.dataBuffer = null;
+            this.indexBuffer = null;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public @Nullable V get(I identifier, boolean cache) {
+        long start = System.nanoTime();
+        try {
+            if (!cache) {
+                return read(getKey(identifier));
+            }
+
+            return getOrLoad(identifier, () -> {
+                V value = read(getKey(identifier));
+                if (value == null) {
+                    return null;
+                }
+
+                // Add the value to the cache
+                cacheLoaded(value);
+                return value;
+            });
+        } finally {
+            getMetrics().record(Operation.GET, start);
+        }
+    }
+
+    @Override
+    public Collection<V> getAll(boolean cache) {
+        try (Stream<V> stream = stream(cache)) {
+            return stream.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public Stream<V> stream(boolean cache) {
+        // Take the keys in the order they're laid out in the data file, the values are only read while the stream is consumed
+        List<String> keys = new ArrayList<>();
+        long stamp = this.lock.readLock();
+        try {
+            MappedByteBuffer index = this.indexBuffer;
+            MappedByteBuffer data = this.dataBuffer;
+            if (index != null) {
+                List<Slot> slots = getLiveSlots(index);
+                slots.sort(Comparator.comparingLong(Slot::position));
+
+                for (Slot slot : slots) {
+                    keys.add(readKey(data, (int) slot.position()));
+                }
+            }
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+
+        Stream<V> stream = keys.stream()
+                .map(this::read)
+                .filter(Objects::nonNull);
+        if (!cache) {
+            return stream;
+        }
+
+        // Add the values to the cache while they're streamed
+        return stream.map(value -> {
+            cacheLoaded(value);
+            return value;
+        });
+    }
+
+    @Override
+    public void save(V value) {
+        long start = System.nanoTime();
+        try {
+            write(List.of(value));
+        } finally {
+            getMetrics().record(Operation.SAVE, start);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<V> values) {
+        long start = System.nanoTime();
+        try {
+            write(values);
+        } finally {
+            getMetrics().record(Operation.SAVE_ALL, start);
+        }
+    }
+
+    /**
+     * Write a batch of values.
+     *
+     * @param values The values you want to write
+     */
+    private void write(Collection<V> values) {
+        // Serialize the values before taking the lock
+        List<V> encodedValues = new ArrayList<>(values.size());
+        List<byte[]> encoded = new ArrayList<>(values.size());
+        for (V value : values) {
+            try {
+                encoded.add(getCodec().encode(value));
+                encodedValues.add(value);
+            } catch (Exception ex) {
+                value.markDirty();
+                ex.printStackTrace();
+            }
+        }
+
+        if (encoded.isEmpty()) {
+            return;
+        }
+
+        int written = 0;
+        long stamp = this.lock.writeLock();
+        try {
+            for (int i = 0; i < encoded.size(); i++) {
+                put(getKey(encodedValues.get(i).getIdentifier()), encoded.get(i));
+                written++;
+            }
+
+            // A batch is forced to disk at once
+            if (this.syncMode != SyncMode.NONE) {
+                this.dataBuffer.force();
+                this.indexBuffer.force();
+            }
+
+            for (int i = 0; i < encoded.size(); i++) {
+                markSaved(encodedValues.get(i), encoded.get(i));
+            }
+        } catch (Exception ex) {
+            // We don't know which records reached the disk, so write all of them again next time
+            encodedValues.forEach(StorageObject::markDirty);
+            ex.printStackTrace();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+
+        // The written values are visible to reads now and replace what the caches knew about their identifiers
+        if (written > 0) {
+            onWrite(encodedValues.subList(0, written).stream().map(StorageObject::getIdentifier).toList());
+        }
+    }
+
+    @Override
+    public void delete(V value) {
+        long start = System.nanoTime();
+        try {
+            I identifier = value.getIdentifier();
+
+            boolean deleted = false;
+            long stamp = this.lock.writeLock();
+            try {
+                if (remove(getKey(identifier)) && this.syncMode != SyncMode.NONE) {
+                    this.dataBuffer.force();
+                    this.indexBuffer.force();
+                }
+
+                deleted = true;
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            } finally {
+                this.lock.unlockWrite(stamp);
+            }
+
+            // Only remove the value from the caches once the tombstone is written
+            if (deleted) {
+                removeFromCache(identifier);
+                onWrite(identifier);
+            }
+        } finally {
+            getMetrics().record(Operation.DELETE, start);
+        }
+    }
+
+    /**
+     * Rewrite the data file with only the latest records, dropping the records of updated and deleted values.
+     * <p>
+     * This blocks all reads and writes while the data is copied.
+     */
+    public void compact() {
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.dataChannel == null) {
+                return;
+            }
+
+            compactLocked();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Set when writes are forced to disk, defaults to {@link SyncMode#BATCH}.
+     * <p>
+     * {@link SyncMode#ALWAYS} and {@link SyncMode#BATCH} both force a batch of saves once after all of them
+     * are written.
+     *
+     * @param syncMode The {@link SyncMode}
+     */
+    public void setSyncMode(SyncMode syncMode) {
+        this.syncMode = syncMode;
+    }
+
+    /**
+     * Set the part of the data file that may be dead before it's compacted on startup, defaults to 0.5.
+     *
+     * @param compactionThreshold The dead ratio above which the data file is compacted, between 0 and 1
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (compactionThreshold < 0D || compactionThreshold > 1D) {
+            throw new IllegalArgumentException("The compaction threshold must be between 0 and 1.");
+        }
+
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Read a value, first optimistically and again under the read lock if a write got in the way.
+     * <p>
+     * The optimistic read only locates the value in the mapping, it's decoded once the stamp is validated. The
+     * records of a mapping never change, so the located bytes stay valid after the validation.
+     *
+     * @param key The key of the value
+     * @return The value, or null if it doesn't exist or couldn't be read
+     */
+    private @Nullable V read(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = StorageUtil.hash(key);
+
+        ByteBuffer value = null;
+        boolean located = false;
+
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                value = locate(hash, keyBytes);
+                located = this.lock.validate(stamp);
+            } catch (RuntimeException ignored) {
+                // A write changed the mapping while we were reading it
+            }
+        }
+
+        if (!located) {
+            stamp = this.lock.readLock();
+            try {
+                value = locate(hash, keyBytes);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                return null;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return getCodec().decode(value, this.storageObjectClass);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Look up a key in the mapped data, without decoding its value.
+     * <p>
+     * Without a lock the lengths can be garbage, the slices are bounded by the mapping so that fails with an
+     * exception instead of a huge allocation.
+     *
+     * @param hash     The hash of the key
+     * @param keyBytes The key
+     * @return The mapped bytes of the value, or null if it doesn't exist
+     */
+    private @Nullable ByteBuffer locate(long hash, byte[] keyBytes) {
+        MappedByteBuffer index = this.indexBuffer;
+        MappedByteBuffer data = this.dataBuffer;
+        if (index == null || data == null) {
+            return null;
+        }
+
+        int slot = findSlot(index, data, hash, keyBytes);
+        if (slot < 0) {
+            return null;
+        }
+
+        int position = (int) index.getLong(getSlotPosition(slot) + 8);
+        int keyLength = data.getInt(position + 4);
+        int valueLength = data.getInt(position + 8);
+
+        return data.slice(position + RECORD_HEADER_SIZE + keyLength, valueLength);
+    }
+
+    /**
+     * Append a record for a value and point its slot to it. The write lock must be held.
+     *
+     * @param key   The key of the value
+     * @param value The serialized value
+     * @throws IOException If the data file couldn't be grown
+     */
+    private void put(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = StorageUtil.hash(key);
+
+        markUnclean();
+        int recordPosition = appendRecord(keyBytes, value);
+        int recordLength = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+
+        MappedByteBuffer index = this.indexBuffer;
+        int slot = findSlot(index, this.dataBuffer, hash, keyBytes);
+        if (slot >= 0) {
+            // The previous record of the value is dead now
+            this.deadBytes += index.getInt(getSlotPosition(slot) + 16);
+        } else {
+            slot = -slot - 1;
+            if (index.getInt(getSlotPosition(slot) + 20) == SLOT_EMPTY) {
+                this.usedSlots++;
+            }
+
+            this.liveCount++;
+        }
+
+        writeSlot(index, slot, hash, recordPosition, recordLength);
+        if (this.usedSlots > this.slotCount * MAX_LOAD_FACTOR) {
+            // Grow the table, or just clear out the deleted slots if most of them are deleted
+            this.indexBuffer = createIndex(getSlotCountFor(this.liveCount), getLiveSlots(index));
+            return;
+        }
+
+        writeIndexHeader(index);
+    }
+
+    /**
+     * Append a delete record for a value and free its slot. The write lock must be held.
+     *
+     * @param key The key of the value
+     * @return If the value existed
+     * @throws IOException If the data file couldn't be grown
+     */
+    private boolean remove(String key) throws IOException {
+        MappedByteBuffer index = this.indexBuffer;
+        if (index == null) {
+            return false;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(index, this.dataBuffer, StorageUtil.hash(key), keyBytes);
+        if (slot < 0) {
+            return false;
+        }
+
+        // Append a tombstone, so the delete survives an index rebuild
+        markUnclean();
+        appendRecord(keyBytes, null);
+
+        int slotPosition = getSlotPosition(slot);
+        this.deadBytes += index.getInt(slotPosition + 16) + RECORD_HEADER_SIZE + keyBytes.length;
+        this.liveCount--;
+        index.putInt(slotPosition + 20, SLOT_DELETED);
+
+        writeIndexHeader(index);
+        return true;
+    }
+
+    /**
+     * Append a record to the data file. The write lock must be held.
+     *
+     * @param keyBytes The key
+     * @param value    The serialized value, or null for a delete
+     * @return The position of the record
+     * @throws IOException If the data file couldn't be grown
+     */
+    private int appendRecord(byte[] keyBytes, byte @Nullable [] value) throws IOException {
+        int valueLength = value == null ? 0 : value.length;
+        long recordLength = RECORD_HEADER_SIZE + keyBytes.length + valueLength;
+        ensureDataCapacity(this.dataSize + recordLength);
+
+        MappedByteBuffer data = this.dataBuffer;
+        int position = (int) this.dataSize;
+        data.putInt(position, checksum(keyBytes, value == null ? null : ByteBuffer.wrap(value)));
+        data.putInt(position + 4, keyBytes.length);
+        data.putInt(position + 8, value == null ? -1 : value.length);
+        data.put(position + RECORD_HEADER_SIZE, keyBytes);
+        if (value != null) {
+            data.put(position + RECORD_HEADER_SIZE + keyBytes.length, value);
+        }
+
+        this.dataSize += recordLength;
+        return position;
+    }
+
+    /**
+     * Make sure the data mapping can hold a size, remapping it with a larger size if needed. The write lock must be held.
+     *
+     * @param size The size the mapping must be able to hold
+     * @throws IOException If the data file couldn't be mapped
+     */
+    private void ensureDataCapacity(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The collection doesn't fit in a single mapped file.");
+        }
+
+        MappedByteBuffer data = this.dataBuffer;
+        if (data != null && size <= data.capacity()) {
+            return;
+        }
+
+        long capacity = data == null ? size : Math.max(size, data.capacity() * 2L);
+        this.dataBuffer = this.dataChannel.map(FileChannel.MapMode.READ_WRITE, 0L, Math.min(Integer.MAX_VALUE, Math.max(capacity, MIN_DATA_CAPACITY)));
+    }
+
+    /**
+     * Open the data file and the index, rebuilding the index if it can't be trusted. The write lock must be held.
+     *
+     * @throws IOException If the files couldn't be opened
+     */
+    private void open() throws IOException {
+        Path dataFile = getDataFile().toPath();
+        this.dataChannel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (this.dataChannel.size() < DATA_HEADER_SIZE) {
+            // A new collection, write the data header
+            this.dataBuffer = null;
+            ensureDataCapacity(DATA_HEADER_SIZE);
+            this.dataBuffer.putInt(0, DATA_MAGIC).putInt(4, VERSION);
+            this.dataSize = DATA_HEADER_SIZE;
+            this.deadBytes = 0L;
+            this.indexBuffer = createIndex(MIN_SLOT_COUNT, List.of());
+            return;
+        }
+
+        this.dataBuffer = null;
+        ensureDataCapacity(this.dataChannel.size());
+        if (this.dataBuffer.getInt(0) != DATA_MAGIC || this.dataBuffer.getInt(4) != VERSION) {
+            throw new IOException(dataFile + " is not a mapped data file.");
+        }
+
+        // The index wasn't closed cleanly, so rebuild it from the data file
+        if (!openIndex()) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Map the existing index file if it was closed cleanly. The write lock must be held.
+     *
+     * @return If the index could be used
+     * @throws IOException If the index file couldn't be read
+     */
+    private boolean openIndex() throws IOException {
+        Path indexFile = getIndexFile().toPath();
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < INDEX_HEADER_SIZE) {
+                return false;
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0L, INDEX_HEADER_SIZE);
+            int slotCount = header.getInt(8);
+            long dataSize = header.getLong(24);
+            if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION || header.getInt(20) != 1
+                    || Integer.bitCount(slotCount) != 1 || channel.size() < INDEX_HEADER_SIZE + (long) slotCount * SLOT_SIZE
+                    || dataSize < DATA_HEADER_SIZE || dataSize > this.dataChannel.size()) {
+                return false;
+            }
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_WRITE, 0L, INDEX_HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+            this.slotCount = slotCount;
+            this.liveCount = index.getInt(12);
+            this.usedSlots = index.getInt(16);
+            this.clean = true;
+            this.dataSize = dataSize;
+            this.deadBytes = index.getLong(32);
+            this.indexBuffer = index;
+            return true;
+        }
+    }
+
+    /**
+     * Rebuild the index by scanning all the records of the data file. The write lock must be held.
+     *
+     * @throws IOException If the index couldn't be written
+     */
+    private void rebuildIndex() throws IOException {
+        MappedByteBuffer data = this.dataBuffer;
+        long end = this.dataChannel.size();
+        Map<String, Slot> slots = new HashMap<>();
+
+        int position = DATA_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= end) {
+            int checksum = data.getInt(position);
+            int keyLength = data.getInt(position + 4);
+            int valueLength = data.getInt(position + 8);
+            if (keyLength <= 0 || valueLength < -1) {
+                break;
+            }
+
+            long recordLength = (long) RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if (position + recordLength > end) {
+                break;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            data.get(position + RECORD_HEADER_SIZE, keyBytes);
+            ByteBuffer value = valueLength < 0 ? null : data.slice(position + RECORD_HEADER_SIZE + keyLength, valueLength);
+            if (checksum(keyBytes, value) != checksum) {
+                break;
+            }
+
+            // The latest record of every key wins
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            if (valueLength < 0) {
+                slots.remove(key);
+            } else {
+                slots.put(key, new Slot(StorageUtil.hash(key), position, (int) recordLength));
+            }
+
+            position += (int) recordLength;
+        }
+
+        long liveBytes = 0L;
+        for (Slot slot : slots.values()) {
+            liveBytes += slot.length();
+        }
+
+        // Everything after the last valid record is dropped by the next append
+        this.dataSize = position;
+        this.deadBytes = position - DATA_HEADER_SIZE - liveBytes;
+        this.indexBuffer = createIndex(getSlotCountFor(slots.size()), slots.values());
+    }
+
+    /**
+     * Copy the live records to a new data file and replace the old one. The write lock must be held.
+     *
+     * @throws IOException If the data couldn't be copied
+     */
+    private void compactLocked() throws IOException {
+        // A crash from here on rebuilds the index from whichever data file survived
+        markUnclean();
+
+        MappedByteBuffer data = this.dataBuffer;
+        List<Slot> slots = getLiveSlots(this.indexBuffer);
+        slots.sort(Comparator.comparingLong(Slot::position));
+
+        long size = DATA_HEADER_SIZE;
+        for (Slot slot : slots) {
+            size += slot.length();
+        }
+
+        Path dataFile = getDataFile().toPath();
+        Path tempFile = dataFile.resolveSibling(dataFile.getFileName() + TEMP_FILE_SUFFIX);
+        List<Slot> compactedSlots = new ArrayList<>(slots.size());
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer compacted = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+            compacted.putInt(0, DATA_MAGIC).putInt(4, VERSION);
+
+            int position = DATA_HEADER_SIZE;
+            for (Slot slot : slots) {
+                compacted.put(position, data, (int) slot.position(), slot.length());
+                compactedSlots.add(new Slot(slot.hash(), position, slot.length()));
+                position += slot.length();
+            }
+
+            compacted.force();
+        }
+
+        moveIntoPlace(tempFile, dataFile);
+
+        // Remap the new data file, the old mapping stays valid for reads that still use it
+        this.dataChannel.close();
+        this.dataChannel = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dataBuffer = null;
+        ensureDataCapacity(size);
+        this.dataSize = size;
+        this.deadBytes = 0L;
+        this.indexBuffer = createIndex(getSlotCountFor(compactedSlots.size()), compactedSlots);
+    }
+
+    /**
+     * Write a new index file with the given slots and map it. The write lock must be held.
+     *
+     * @param slotCount The amount of slots, a power of two
+     * @param slots     The live slots
+     * @return The mapped index
+     * @throws IOException If the index couldn't be written
+     */
+    private MappedByteBuffer createIndex(int slotCount, Collection<Slot> slots) throws IOException {
+        Path indexFile = getIndexFile().toPath();
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + TEMP_FILE_SUFFIX);
+
+        MappedByteBuffer index;
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            index = channel.map(FileChannel.MapMode.READ_WRITE, 0L, INDEX_HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        }
+
+        // The keys are unique, so a slot only has to be found by its hash
+        int mask = slotCount - 1;
+        for (Slot slot : slots) {
+            int i = spread(slot.hash()) & mask;
+            while (index.getInt(getSlotPosition(i) + 20) != SLOT_EMPTY) {
+                i = (i + 1) & mask;
+            }
+
+            writeSlot(index, i, slot.hash(), slot.position(), slot.length());
+        }
+
+        this.slotCount = slotCount;
+        this.liveCount = slots.size();
+        this.usedSlots = slots.size();
+        this.clean = false;
+        writeIndexHeader(index);
+        index.force();
+
+        moveIntoPlace(tempFile, indexFile);
+        return index;
+    }
+
+    /**
+     * Mark the index as in use, so a crash before the next clean shutdown rebuilds it. The write lock must be held.
+     */
+    private void markUnclean() {
+        if (!this.clean) {
+            return;
+        }
+
+        this.clean = false;
+        writeIndexHeader(this.indexBuffer);
+        this.indexBuffer.force();
+    }
+
+    /**
+     * Write the header fields to an index.
+     *
+     * @param index The mapped index
+     */
+    private void writeIndexHeader(MappedByteBuffer index) {
+        index.putInt(0, INDEX_MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, this.slotCount)
+                .putInt(12, this.liveCount)
+                .putInt(16, this.usedSlots)
+                .putInt(20, this.clean ? 1 : 0)
+                .putLong(24, this.dataSize)
+                .putLong(32, this.deadBytes);
+    }
+
+    /**
+     * Write a live slot to an index.
+     *
+     * @param index    The mapped index
+     * @param slot     The slot number
+     * @param hash     The hash of the key
+     * @param position The position of the record
+     * @param length   The length of the record
+     */
+    private void writeSlot(MappedByteBuffer index, int slot, long hash, long position, int length) {
+        int slotPosition = getSlotPosition(slot);
+        index.putLong(slotPosition, hash)
+                .putLong(slotPosition + 8, position)
+                .putInt(slotPosition + 16, length)
+                .putInt(slotPosition + 20, SLOT_LIVE);
+    }
+
+    /**
+     * Find the slot of a key.
+     *
+     * @param index    The mapped index
+     * @param data     The mapped data
+     * @param hash     The hash of the key
+     * @param keyBytes The key
+     * @return The slot of the key, or {@code -(insertion slot) - 1} if the key doesn't exist
+     */
+    private int findSlot(MappedByteBuffer index, MappedByteBuffer data, long hash, byte[] keyBytes) {
+        int slotCount = index.getInt(8);
+        int mask = slotCount - 1;
+        int insertionSlot = -1;
+
+        int slot = spread(hash) & mask;
+        for (int probes = 0; probes < slotCount; probes++, slot = (slot + 1) & mask) {
+            int slotPosition = getSlotPosition(slot);
+            int state = index.getInt(slotPosition + 20);
+            if (state == SLOT_EMPTY) {
+                return -(insertionSlot < 0 ? slot : insertionSlot) - 1;
+            }
+
+            if (state == SLOT_DELETED) {
+                // Deleted slots are reused, but the key might still be further along
+                if (insertionSlot < 0) {
+                    insertionSlot = slot;
+                }
+
+                continue;
+            }
+
+            if (index.getLong(slotPosition) == hash && keyEquals(data, (int) index.getLong(slotPosition + 8), keyBytes)) {
+                return slot;
+            }
+        }
+
+        return -(insertionSlot < 0 ? 0 : insertionSlot) - 1;
+    }
+
+    /**
+     * Get all the live slots of an index.
+     *
+     * @param index The mapped index
+     * @return The live slots
+     */
+    private List<Slot> getLiveSlots(MappedByteBuffer index) {
+        int slotCount = index.getInt(8);
+        List<Slot> slots = new ArrayList<>(index.getInt(12));
+        for (int slot = 0; slot < slotCount; slot++) {
+            int slotPosition = getSlotPosition(slot);
+            if (index.getInt(slotPosition + 20) != SLOT_LIVE) {
+                continue;
+            }
+
+            slots.add(new Slot(index.getLong(slotPosition), index.getLong(slotPosition + 8), index.getInt(slotPosition + 16)));
+        }
+
+        return slots;
+    }
+
+    /**
+     * Check if the key of a record equals a key.
+     *
+     * @param data     The mapped data
+     * @param position The position of the record
+     * @param keyBytes The key
+     * @return If the keys are equal
+     */
+    private boolean keyEquals(MappedByteBuffer data, int position, byte[] keyBytes) {
+        if (data.getInt(position + 4) != keyBytes.length) {
+            return false;
+        }
+
+        return data.slice(position + RECORD_HEADER_SIZE, keyBytes.length).equals(ByteBuffer.wrap(keyBytes));
+    }
+
+    /**
+     * Read the key of a record.
+     *
+     * @param data     The mapped data
+     * @param position The position of the record
+     * @return The key
+     */
+    private String readKey(MappedByteBuffer data, int position) {
+        byte[] keyBytes = new byte[data.getInt(position + 4)];
+        data.get(position + RECORD_HEADER_SIZE, keyBytes);
+        return new String(keyBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Atomically replace a file with a temporary file.
+     *
+     * @param tempFile The temporary file
+     * @param file     The file
+     * @throws IOException If the file couldn't be moved
+     */
+    private void moveIntoPlace(Path tempFile, Path file) throws IOException {
+        try {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Calculate the checksum of a record.
+     *
+     * @param keyBytes The key
+     * @param value    The serialized value, or null for a delete
+     * @return The CRC32C of the key and the value
+     */
+    private static int checksum(byte[] keyBytes, @Nullable ByteBuffer value) {
+        CRC32C crc = new CRC32C();
+        crc.update(keyBytes);
+        if (value != null) {
+            crc.update(value);
+        }
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Get the amount of slots for an amount of values, leaving room to grow.
+     *
+     * @param liveCount The amount of values
+     * @return The amount of slots, a power of two
+     */
+    private static int getSlotCountFor(int liveCount) {
+        int wanted = Math.max(MIN_SLOT_COUNT, liveCount * 4);
+        return Integer.highestOneBit(wanted - 1) << 1;
+    }
+
+    private static int getSlotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int spread(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Get the key of an identifier.
+     *
+     * @param identifier The identifier
+     * @return The key
+     */
+    private String getKey(I identifier) {
+        return String.valueOf(identifier);
+    }
+
+    /**
+     * Get the data file of the {@link StorageService}.
+     *
+     * @return The data file
+     */
+    private File getDataFile() {
+        return new File(this.databaseFolder, getCollectionName() + DATA_FILE_SUFFIX);
+    }
+
+    /**
+     * Get the index file of the {@link StorageService}.
+     *
+     * @return The index file
+     */
+    private File getIndexFile() {
+        return new File(this.databaseFolder, getCollectionName() + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Get the collection name from the {@link StorageContext}.
+     *
+     * @return The collection name
+     */
+    private String getCollectionName() {
+        StorageContext storageContext = getStorageContext();
+        if (storageContext == null) {
+            throw new NullPointerException("StorageContext is null");
+        }
+
+        return storageContext.collectionName();
+    }
+
+    /**
+     * A live slot of the index.
+     *
+     * @param hash     The hash of the key
+     * @param position The position of the record
+     * @param length   The length of the record
+     */
+    private record Slot(long hash, long position, int length) {
+    }
+}
@@ -1,27 +1,72 @@
 package dev.vertcode.vcore.storage.service;
 
 import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.*;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
 import dev.vertcode.vcore.storage.StorageObject;
 import dev.vertcode.vcore.storage.StorageService;
 import dev.vertcode.vcore.storage.annotation.StorageContext;
-import dev.vertcode.vcore.storage.util.StorageUtil;
+import dev.vertcode.vcore.storage.cache.RemovalCause;
+import dev.vertcode.vcore.storage.codec.BsonObjectCodec;
+import dev.vertcode.vcore.storage.codec.StorageCodec;
+import dev.vertcode.vcore.storage.metrics.Operation;
+import dev.vertcode.vcore.storage.query.Condition;
+import dev.vertcode.vcore.storage.query.Query;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.ByteBuf;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MongoStorageService<I, V extends StorageObject<I>> extends StorageService<I, V> {
 
+    private static final int CURSOR_BATCH_SIZE = 100;
+    private static final String PAYLOAD_FIELD = "payload";
+
     private final ConnectionString connectionString;
     private MongoDatabase mongoDatabase;
+    private final Map<I, BsonDocument> snapshots = new ConcurrentHashMap<>();
+    private BsonObjectCodec<V> objectCodec;
+    private CodecRegistry codecRegistry;
+    private int bulkWriteBatchSize = 1000;
+    private boolean bsonMapping = false;
+    private boolean partialUpdates = false;
+    private double partialUpdateRatio = 0.5D;
 
     public MongoStorageService(Class<V> storageObjectClass, ConnectionString connectionString) {
         super(storageObjectClass);
@@ -44,77 +89,730 @@ public class MongoStorageService<I, V extends StorageObject<I>> extends StorageS
 
         // Get the database
         this.mongoDatabase = mongoClient.getDatabase(connectionString.getDatabase());
+
+        // Map the storage objects directly to BSON, the default codecs handle the filters
+        this.objectCodec = new BsonObjectCodec<>(this.storageObjectClass);
+        this.codecRegistry = CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(this.objectCodec),
+                MongoClientSettings.getDefaultCodecRegistry()
+        );
+
+        startWarmup();
     }
 
     @Override
     public @Nullable V get(I identifier, boolean cache) {
+        long start = System.nanoTime();
+        try {
+            if (!cache) {
+                return findById(identifier);
+            }
+
+            return getOrLoad(identifier, () -> {
+                V value = findById(identifier);
+                if (value == null) {
+                    return null;
+                }
+
+                // Add the value to the cache
+                cacheLoaded(value);
+                return value;
+            });
+        } finally {
+            getMetrics().record(Operation.GET, start);
+        }
+    }
+
+    /**
+     * Find a value in the collection.
+     *
+     * @param identifier The identifier of the value
+     * @return The value, or null if it doesn't exist
+     */
+    private @Nullable V findById(I identifier) {
+        if (this.bsonMapping) {
+            return getObjectCollection().find(Filters.eq(getIdentifierField(), parseIdentifier(identifier))).first();
+        }
+
         // Get the collection
         MongoCollection<Document> collection = getCollection();
         Document document = collection.find(Filters.eq(getIdentifierField(), parseIdentifier(identifier))).first();
-        if (document == null) {
-            return null;
+        return document == null ? null : readDocument(document);
+    }
+
+    @Override
+    public Collection<V> getAll(boolean cache) {
+        try (Stream<V> stream = stream(cache)) {
+            return stream.collect(Collectors.toCollection(ArrayList::new));
         }
+    }
 
-        V value = StorageUtil.getGson().fromJson(document.toJson(), this.storageObjectClass);
-        if (!cache || value == null) {
-            return value;
+    @Override
+    public Stream<V> stream(boolean cache) {
+        // Get the collection, the cursor fetches the documents in batches while the stream is consumed
+        Stream<V> stream;
+        if (this.bsonMapping) {
+            stream = streamCursor(getObjectCollection().find().batchSize(CURSOR_BATCH_SIZE).iterator());
+        } else {
+            MongoCollection<Document> collection = getCollection();
+            stream = streamCursor(collection.find().batchSize(CURSOR_BATCH_SIZE).iterator())
+                    .map(this::readDocument)
+                    .filter(Objects::nonNull);
         }
 
-        // Add the value to the cache
-        addToCache(value);
-        return value;
+        if (!cache) {
+            return stream;
+        }
+
+        // Add the values to the cache while they're streamed
+        return stream.map(value -> {
+            cacheLoaded(value);
+            return value;
+        });
     }
 
     @Override
-    public Collection<V> getAll(boolean cache) {
-        // Get the collection
-        MongoCollection<Document> collection = getCollection();
-        List<V> storageObjects = new ArrayList<>();
+    public List<V> query(Query query, boolean cache) {
+        // Binary payloads can't be filtered on the server
+        if (!this.bsonMapping && !getCodec().isJson()) {
+            return super.query(query, cache);
+        }
 
-        try (MongoCursor<Document> mongoCursor = collection.find().iterator()) {
-            while (mongoCursor.hasNext()) {
-                Document document = mongoCursor.next();
-                V value = StorageUtil.getGson().fromJson(document.toJson(), this.storageObjectClass);
-                if (value == null) {
-                    continue;
-                }
+        long start = System.nanoTime();
+        List<V> values;
+        try {
+            values = this.bsonMapping
+                    ? find(getObjectCollection(), query, Function.identity())
+                    : find(getCollection(), query, this::readDocument);
+        } finally {
+            getMetrics().record(Operation.QUERY, start);
+        }
 
-                // Add the value to the list
-                storageObjects.add(value);
+        // Values loaded with a projection are incomplete, so they're never cached
+        if (!cache || !query.getFields().isEmpty()) {
+            return values;
+        }
 
-                if (!cache) {
-                    continue;
-                }
+        // Values that are cached already keep their instance
+        values.replaceAll(this::cacheLoadedIfAbsent);
+        return values;
+    }
 
-                // Add the value to the cache
-                addToCache(value);
+    @Override
+    public void save(V value) {
+        long start = System.nanoTime();
+        try {
+            try {
+                markSaved(value, write(value));
+            } finally {
+                // The write might have reached the database even if it failed
+                onWrite(value.getIdentifier());
             }
+        } finally {
+            getMetrics().record(Operation.SAVE, start);
         }
-
-        return storageObjects;
     }
 
     @Override
-    public void save(V value) {
+    public void saveAll(Collection<V> values) {
+        long start = System.nanoTime();
+        try {
+            try {
+                // Hash what was written, a change made during the write must still count as unsaved
+                Iterator<byte[]> written = writeAll(values).iterator();
+                for (V value : values) {
+                    markSaved(value, written.next());
+                }
+            } finally {
+                onWrite(values.stream().map(StorageObject::getIdentifier).toList());
+            }
+        } finally {
+            getMetrics().record(Operation.SAVE_ALL, start);
+        }
+    }
+
+    /**
+     * Write a value to the collection.
+     *
+     * @param value The value you want to write
+     * @return The bytes of the written state, see {@link #encodeForHash(StorageObject)}
+     */
+    private byte[] write(V value) {
+        if (usesPartialUpdates()) {
+            return savePartial(value);
+        }
+
+        if (this.bsonMapping) {
+            EncodedDocument<BsonDocument> encoded = toBsonDocument(value);
+            getBsonCollection().replaceOne(
+                    Filters.eq(getIdentifierField(), parseIdentifier(value.getIdentifier())),
+                    encoded.document(),
+                    new ReplaceOptions().upsert(true)
+            );
+            return encoded.state();
+        }
+
         // Get the collection and the document
         MongoCollection<Document> collection = getCollection();
-        Document document = Document.parse(StorageUtil.getGson().toJson(value));
+        EncodedDocument<Document> encoded = toDocument(value);
 
         // Insert the document
         collection.replaceOne(
                 Filters.eq(getIdentifierField(), parseIdentifier(value.getIdentifier())),
-                document,
+                encoded.document(),
                 new ReplaceOptions().upsert(true)
         );
+        return encoded.state();
+    }
+
+    /**
+     * Write multiple values to the collection.
+     *
+     * @param values The values you want to write
+     * @return The bytes of the written states, in the order of the values
+     */
+    private List<byte[]> writeAll(Collection<V> values) {
+        if (usesPartialUpdates()) {
+            return saveAllPartial(values);
+        }
+
+        if (this.bsonMapping) {
+            return replaceAll(getBsonCollection(), values, this::toBsonDocument);
+        }
+
+        return replaceAll(getCollection(), values, this::toDocument);
+    }
+
+    @Override
+    protected byte[] encodeForHash(V value) {
+        // Values mapped to BSON are written without the codec, so hash the BSON that is written instead
+        if (this.bsonMapping) {
+            return toBsonDocument(value).state();
+        }
+
+        return super.encodeForHash(value);
     }
 
     @Override
     public void delete(V value) {
-        // Get the collection
-        MongoCollection<Document> collection = getCollection();
+        long start = System.nanoTime();
+        try {
+            // Get the collection
+            MongoCollection<Document> collection = getCollection();
 
-        // Delete the document
-        collection.deleteOne(Filters.eq(getIdentifierField(), parseIdentifier(value.getIdentifier())));
+            // Delete the document
+            collection.deleteOne(Filters.eq(getIdentifierField(), parseIdentifier(value.getIdentifier())));
+            this.snapshots.remove(value.getIdentifier());
+            onWrite(value.getIdentifier());
+        } finally {
+            getMetrics().record(Operation.DELETE, start);
+        }
+    }
+
+    @Override
+    protected Stream<I> streamIdentifiers(@Nullable Query query) {
+        // Binary payloads can't be filtered on the server, and the identifier is only known after decoding them
+        if (!this.bsonMapping && !getCodec().isJson()) {
+            return super.streamIdentifiers(query);
+        }
+
+        // Only fetch the identifiers, the cursor fetches them in batches while the stream is consumed
+        Query find = query == null ? Query.create() : query;
+        Bson projection = Projections.include(getIdentifierField());
+        Stream<V> stream;
+        if (this.bsonMapping) {
+            stream = streamCursor(createFind(getObjectCollection(), find).projection(projection).iterator());
+        } else {
+            stream = streamCursor(createFind(getCollection(), find).projection(projection).iterator())
+                    .map(this::readDocument)
+                    .filter(Objects::nonNull);
+        }
+
+        return stream.map(StorageObject::getIdentifier);
+    }
+
+    @Override
+    protected Map<I, V> loadMany(Collection<I> identifiers) {
+        List<Object> parsedIdentifiers = new ArrayList<>(identifiers.size());
+        for (I identifier : identifiers) {
+            parsedIdentifiers.add(parseIdentifier(identifier));
+        }
+
+        // Fetch all the values in a single query
+        Bson filter = Filters.in(getIdentifierField(), parsedIdentifiers);
+        Stream<V> stream;
+        if (this.bsonMapping) {
+            stream = streamCursor(getObjectCollection().find(filter).batchSize(CURSOR_BATCH_SIZE).iterator());
+        } else {
+            stream = streamCursor(getCollection().find(filter).batchSize(CURSOR_BATCH_SIZE).iterator())
+                    .map(this::readDocument)
+                    .filter(Objects::nonNull);
+        }
+
+        Map<I, V> values = new HashMap<>();
+        try (stream) {
+            stream.forEach(value -> values.put(value.getIdentifier(), value));
+        }
+
+        return values;
+    }
+
+    @Override
+    protected void cacheLoaded(V value) {
+        super.cacheLoaded(value);
+        rememberSnapshot(value);
+    }
+
+    @Override
+    protected void onCacheRemoval(V value, RemovalCause cause) {
+        super.onCacheRemoval(value, cause);
+
+        // Only cached values keep a snapshot, the value gets a new one when it's loaded again
+        if (!contains(value.getIdentifier())) {
+            this.snapshots.remove(value.getIdentifier());
+        }
+    }
+
+    /**
+     * Set the maximum amount of writes that are sent in a single bulk write.
+     *
+     * @param bulkWriteBatchSize The maximum amount of writes per bulk write
+     */
+    public void setBulkWriteBatchSize(int bulkWriteBatchSize) {
+        if (bulkWriteBatchSize < 1) {
+            throw new IllegalArgumentException("The bulk write batch size must be at least 1.");
+        }
+
+        this.bulkWriteBatchSize = bulkWriteBatchSize;
+    }
+
+    /**
+     * Set if the {@link StorageObject}s should be mapped directly to and from BSON with a {@link BsonObjectCodec},
+     * instead of going through the {@link StorageCodec} and a JSON string.
+     * <p>
+     * The documents have the same shape as the ones written through Gson, so this can be turned on for
+     * existing collections. Type adapters registered in Gson only apply to the types of the JDK.
+     *
+     * @param bsonMapping If the values should be mapped directly to BSON
+     */
+    public void setBsonMapping(boolean bsonMapping) {
+        this.bsonMapping = bsonMapping;
+        this.snapshots.clear();
+    }
+
+    /**
+     * Set if only the changed top-level fields of a document should be written, with {@code $set} and
+     * {@code $unset}, instead of replacing the whole document.
+     * <p>
+     * The fields are compared against a snapshot of the document as it was last loaded or saved, snapshots are
+     * only kept for cached values. Values without a snapshot, or with too many changed fields, are replaced as
+     * a whole. This only applies to documents with fields, so a JSON {@link StorageCodec} or the BSON mapping.
+     *
+     * @param partialUpdates If only the changed fields should be written
+     */
+    public void setPartialUpdates(boolean partialUpdates) {
+        this.partialUpdates = partialUpdates;
+        this.snapshots.clear();
+    }
+
+    /**
+     * Set the part of the top-level fields that can change before a document is replaced as a whole instead of
+     * updated, defaults to 0.5.
+     *
+     * @param partialUpdateRatio The ratio of changed fields, between 0 and 1
+     */
+    public void setPartialUpdateRatio(double partialUpdateRatio) {
+        if (partialUpdateRatio <= 0D || partialUpdateRatio > 1D) {
+            throw new IllegalArgumentException("The partial update ratio must be between 0 and 1.");
+        }
+
+        this.partialUpdateRatio = partialUpdateRatio;
+    }
+
+    /**
+     * Save a value, writing only the fields that changed since its snapshot.
+     *
+     * @param value The value you want to save
+     * @return The bytes of the written state
+     */
+    private byte[] savePartial(V value) {
+        MongoCollection<BsonDocument> collection = getBsonCollection();
+        PartialWrite<I> write = createPartialWrite(value);
+
+        if (write.changes() == null) {
+            collection.replaceOne(write.filter(), write.document(), new ReplaceOptions().upsert(true));
+        } else if (!write.changes().isEmpty()) {
+            UpdateResult result = collection.updateOne(write.filter(), Updates.combine(write.changes()));
+
+            // The document was deleted in the meantime, write it as a whole again
+            if (result.getMatchedCount() == 0L) {
+                collection.replaceOne(write.filter(), write.document(), new ReplaceOptions().upsert(true));
+            }
+        }
+
+        rememberSnapshot(write);
+        return write.state();
+    }
+
+    /**
+     * Save values in bulk writes, writing only the fields that changed since their snapshots.
+     *
+     * @param values The values you want to save
+     * @return The bytes of the written states, in the order of the values
+     */
+    private List<byte[]> saveAllPartial(Collection<V> values) {
+        List<PartialWrite<I>> batch = new ArrayList<>(Math.min(values.size(), this.bulkWriteBatchSize));
+        List<byte[]> states = new ArrayList<>(values.size());
+
+        for (V value : values) {
+            PartialWrite<I> write = createPartialWrite(value);
+            states.add(write.state());
+
+            // Nothing changed, only refresh the snapshot of the value
+            if (write.changes() != null && write.changes().isEmpty()) {
+                rememberSnapshot(write);
+                continue;
+            }
+
+            batch.add(write);
+
+            // Only send the batch once it's full
+            if (batch.size() < this.bulkWriteBatchSize) {
+                continue;
+            }
+
+            writePartialBatch(batch);
+            batch.clear();
+        }
+
+        // Send the remaining writes
+        if (!batch.isEmpty()) {
+            writePartialBatch(batch);
+        }
+
+        return states;
+    }
+
+    /**
+     * Send a batch of partial writes in a single bulk write.
+     *
+     * @param batch The writes you want to send
+     */
+    private void writePartialBatch(List<PartialWrite<I>> batch) {
+        MongoCollection<BsonDocument> collection = getBsonCollection();
+        List<WriteModel<BsonDocument>> writes = new ArrayList<>(batch.size());
+        for (PartialWrite<I> write : batch) {
+            writes.add(write.changes() == null ? write.toReplaceModel() : write.toUpdateModel());
+        }
+
+        BulkWriteResult result = collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+
+        // Every replace matched or upserted, so a missing match is an update of a document that was deleted in
+        // the meantime. We can't tell which one, so replace all updated documents as a whole again.
+        if (result.getMatchedCount() + result.getUpserts().size() < writes.size()) {
+            List<WriteModel<BsonDocument>> replaces = new ArrayList<>();
+            for (PartialWrite<I> write : batch) {
+                if (write.changes() != null) {
+                    replaces.add(write.toReplaceModel());
+                }
+            }
+
+            collection.bulkWrite(replaces, new BulkWriteOptions().ordered(false));
+        }
+
+        for (PartialWrite<I> write : batch) {
+            rememberSnapshot(write);
+        }
+    }
+
+    /**
+     * Compare a value against its snapshot.
+     *
+     * @param value The value you want to write
+     * @return The {@link PartialWrite} of the value
+     */
+    private PartialWrite<I> createPartialWrite(V value) {
+        I identifier = value.getIdentifier();
+        Bson filter = Filters.eq(getIdentifierField(), parseIdentifier(identifier));
+        EncodedDocument<BsonDocument> encoded = toBsonDocument(value);
+        BsonDocument document = encoded.document();
+
+        BsonDocument snapshot = this.snapshots.get(identifier);
+        if (snapshot == null) {
+            return new PartialWrite<>(identifier, filter, document, encoded.state(), null);
+        }
+
+        List<Bson> changes = new ArrayList<>();
+        for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+            if (!entry.getValue().equals(snapshot.get(entry.getKey()))) {
+                changes.add(Updates.set(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        for (String field : snapshot.keySet()) {
+            if (!document.containsKey(field)) {
+                changes.add(Updates.unset(field));
+            }
+        }
+
+        // Replace the document when most of it changed anyway
+        if (changes.size() > document.size() * this.partialUpdateRatio) {
+            return new PartialWrite<>(identifier, filter, document, encoded.state(), null);
+        }
+
+        return new PartialWrite<>(identifier, filter, document, encoded.state(), changes);
+    }
+
+    /**
+     * Remember the written document of a value as its snapshot, if the value is still cached.
+     *
+     * @param write The {@link PartialWrite} that was written
+     */
+    private void rememberSnapshot(PartialWrite<I> write) {
+        if (contains(write.identifier())) {
+            this.snapshots.put(write.identifier(), write.document());
+        }
+    }
+
+    /**
+     * Remember the document of a value that was just loaded as its snapshot.
+     *
+     * @param value The value that was loaded
+     */
+    private void rememberSnapshot(V value) {
+        if (!usesPartialUpdates()) {
+            return;
+        }
+
+        this.snapshots.put(value.getIdentifier(), toBsonDocument(value).document());
+    }
+
+    /**
+     * Check if partial updates apply, which needs documents with fields.
+     *
+     * @return If only the changed fields are written
+     */
+    private boolean usesPartialUpdates() {
+        return this.partialUpdates && (this.bsonMapping || getCodec().isJson());
+    }
+
+    /**
+     * Write a {@link StorageObject} to a {@link BsonDocument}, with the same fields as a saved document.
+     *
+     * @param value The value you want to write
+     * @return The document, with the BSON bytes as state when the value is mapped to BSON and the codec bytes otherwise
+     */
+    private EncodedDocument<BsonDocument> toBsonDocument(V value) {
+        if (this.bsonMapping) {
+            RawBsonDocument document = new RawBsonDocument(value, this.objectCodec);
+            ByteBuf buffer = document.getByteBuffer();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new EncodedDocument<>(document, bytes);
+        }
+
+        byte[] encoded = getCodec().encode(value);
+        return new EncodedDocument<>(BsonDocument.parse(new String(encoded, StandardCharsets.UTF_8)), encoded);
+    }
+
+    /**
+     * Replace the documents of the values in bulk writes, inserting the ones that don't exist yet.
+     *
+     * @param collection The collection
+     * @param values     The values you want to write
+     * @param mapper     The function that turns a value into a document of the collection
+     * @param <T>        The document type of the collection
+     * @return The bytes of the written states, in the order of the values
+     */
+    private <T> List<byte[]> replaceAll(MongoCollection<T> collection, Collection<V> values, Function<V, EncodedDocument<T>> mapper) {
+        List<WriteModel<T>> writes = new ArrayList<>(Math.min(values.size(), this.bulkWriteBatchSize));
+        List<byte[]> states = new ArrayList<>(values.size());
+
+        for (V value : values) {
+            EncodedDocument<T> encoded = mapper.apply(value);
+            states.add(encoded.state());
+            writes.add(new ReplaceOneModel<>(
+                    Filters.eq(getIdentifierField(), parseIdentifier(value.getIdentifier())),
+                    encoded.document(),
+                    new ReplaceOptions().upsert(true)
+            ));
+
+            // Only send the batch once it's full
+            if (writes.size() < this.bulkWriteBatchSize) {
+                continue;
+            }
+
+            collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            writes.clear();
+        }
+
+        // Send the remaining writes
+        if (!writes.isEmpty()) {
+            collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        }
+
+        return states;
+    }
+
+    /**
+     * Find the documents matching a {@link Query} on the server, with the sort, limit and projection applied.
+     *
+     * @param collection The collection
+     * @param query      The query
+     * @param mapper     The function that turns a document into a value
+     * @param <T>        The document type of the collection
+     * @return The matching values
+     */
+    private <T> List<V> find(MongoCollection<T> collection, Query query, Function<T, V> mapper) {
+        FindIterable<T> findIterable = createFind(collection, query);
+
+        // Always load the identifier, so the values stay identifiable
+        if (!query.getFields().isEmpty()) {
+            List<String> fields = new ArrayList<>(query.getFields());
+            fields.add(getIdentifierField());
+            findIterable = findIterable.projection(Projections.include(fields));
+        }
+
+        List<V> values = new ArrayList<>();
+        try (MongoCursor<T> mongoCursor = findIterable.iterator()) {
+            while (mongoCursor.hasNext()) {
+                V value = mapper.apply(mongoCursor.next());
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Create a find of the documents that match a {@link Query}, sorted and limited like the query says.
+     *
+     * @param collection The collection you want to search
+     * @param query      The query
+     * @param <T>        The document type of the collection
+     * @return The find, without a projection
+     */
+    private <T> FindIterable<T> createFind(MongoCollection<T> collection, Query query) {
+        FindIterable<T> findIterable = collection.find(toFilter(query)).batchSize(CURSOR_BATCH_SIZE);
+
+        String sortField = query.getSortField();
+        if (sortField != null) {
+            findIterable = findIterable.sort(query.isAscending() ? Sorts.ascending(sortField) : Sorts.descending(sortField));
+        }
+
+        if (query.getLimit() > 0) {
+            findIterable = findIterable.limit(query.getLimit());
+        }
+
+        return findIterable;
+    }
+
+    /**
+     * Translate the conditions of a {@link Query} to a filter.
+     *
+     * @param query The query
+     * @return The filter, matching every document if the query has no conditions
+     */
+    private Bson toFilter(Query query) {
+        List<Bson> filters = new ArrayList<>();
+        for (Condition condition : query.getConditions()) {
+            String field = condition.field();
+            Object value = toDatabaseValue(condition.value());
+
+            filters.add(switch (condition.operator()) {
+                case EQUALS -> Filters.eq(field, value);
+                case NOT_EQUALS -> Filters.ne(field, value);
+                case GREATER_THAN -> Filters.gt(field, value);
+                case GREATER_THAN_OR_EQUALS -> Filters.gte(field, value);
+                case LESS_THAN -> Filters.lt(field, value);
+                case LESS_THAN_OR_EQUALS -> Filters.lte(field, value);
+                case IN -> Filters.in(field, (List<?>) value);
+            });
+        }
+
+        if (filters.isEmpty()) {
+            return new Document();
+        }
+
+        return filters.size() == 1 ? filters.get(0) : Filters.and(filters);
+    }
+
+    /**
+     * Convert a value of a condition to the way it's stored, like {@link #parseIdentifier(Object)}.
+     *
+     * @param value The value you want to convert
+     * @return The converted value
+     */
+    private @Nullable Object toDatabaseValue(@Nullable Object value) {
+        if (value instanceof UUID || value instanceof Character) {
+            return value.toString();
+        } else if (value instanceof Enum<?> constant) {
+            return constant.name();
+        } else if (value instanceof Collection<?> values) {
+            List<Object> converted = new ArrayList<>(values.size());
+            for (Object element : values) {
+                converted.add(toDatabaseValue(element));
+            }
+
+            return converted;
+        }
+
+        return value;
+    }
+
+    /**
+     * Stream the documents of a cursor, closing the cursor when the stream is closed.
+     *
+     * @param mongoCursor The cursor
+     * @param <T>         The document type
+     * @return The stream
+     */
+    private <T> Stream<T> streamCursor(MongoCursor<T> mongoCursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(mongoCursor, Spliterator.ORDERED), false)
+                .onClose(mongoCursor::close);
+    }
+
+    /**
+     * Write a {@link StorageObject} to a document with the {@link StorageCodec} of the service.
+     * <p>
+     * JSON codecs are stored as a regular document. Other codecs are stored as a binary payload next to the
+     * identifier, so the identifier can still be queried.
+     *
+     * @param value The value you want to write
+     * @return The document, with the codec bytes as state
+     */
+    private EncodedDocument<Document> toDocument(V value) {
+        StorageCodec codec = getCodec();
+        byte[] encoded = codec.encode(value);
+        if (codec.isJson()) {
+            return new EncodedDocument<>(Document.parse(new String(encoded, StandardCharsets.UTF_8)), encoded);
+        }
+
+        Document document = new Document(getIdentifierField(), parseIdentifier(value.getIdentifier()))
+                .append(PAYLOAD_FIELD, new Binary(encoded));
+        return new EncodedDocument<>(document, encoded);
+    }
+
+    /**
+     * Read a {@link StorageObject} from a document with the {@link StorageCodec} of the service.
+     *
+     * @param document The document you want to read
+     * @return The value, or null if the document is empty
+     */
+    private @Nullable V readDocument(Document document) {
+        StorageCodec codec = getCodec();
+        if (codec.isJson()) {
+            return codec.decode(document.toJson().getBytes(StandardCharsets.UTF_8), this.storageObjectClass);
+        }
+
+        Binary payload = document.get(PAYLOAD_FIELD, Binary.class);
+        if (payload == null) {
+            return null;
+        }
+
+        return codec.decode(payload.getData(), this.storageObjectClass);
     }
 
     /**
@@ -145,6 +843,26 @@ public class MongoStorageService<I, V extends StorageObject<I>> extends StorageS
         return this.mongoDatabase.getCollection(storageContext.collectionName());
     }
 
+    /**
+     * Get the collection with the documents as {@link BsonDocument}s.
+     *
+     * @return The collection
+     */
+    private @NotNull MongoCollection<BsonDocument> getBsonCollection() {
+        return getCollection().withDocumentClass(BsonDocument.class);
+    }
+
+    /**
+     * Get the collection with the documents mapped directly to {@link StorageObject}s.
+     *
+     * @return The collection
+     */
+    private @NotNull MongoCollection<V> getObjectCollection() {
+        return getCollection()
+                .withDocumentClass(this.storageObjectClass)
+                .withCodecRegistry(this.codecRegistry);
+    }
+
     /**
      * Get the identifier field from the {@link StorageContext}.
      *
@@ -159,4 +877,36 @@ public class MongoStorageService<I, V extends StorageObject<I>> extends StorageS
         return storageContext.identifierField();
     }
 
+    /**
+     * A write of a single value, either the changed fields or the whole document.
+     *
+     * @param identifier The identifier of the value
+     * @param filter     The filter that matches the document of the value
+     * @param document   The whole document
+     * @param state      The bytes of the written state, see {@link #encodeForHash(StorageObject)}
+     * @param changes    The changed fields, or null if the document is replaced
+     * @param <K>        The type of the identifier
+     */
+    private record PartialWrite<K>(K identifier, Bson filter, BsonDocument document, byte[] state, @Nullable List<Bson> changes) {
+
+        WriteModel<BsonDocument> toReplaceModel() {
+            return new ReplaceOneModel<>(this.filter, this.document, new ReplaceOptions().upsert(true));
+        }
+
+        WriteModel<BsonDocument> toUpdateModel() {
+            return new UpdateOneModel<>(this.filter, Updates.combine(this.changes));
+        }
+
+    }
+
+    /**
+     * A document that is about to be written, with the bytes of the state it holds.
+     *
+     * @param document The document
+     * @param state    The bytes of the state, see {@link #encodeForHash(StorageObject)}
+     * @param <T>      The document type
+     */
+    private record EncodedDocument<T>(T document, byte[] state) {
+    }
+
 }
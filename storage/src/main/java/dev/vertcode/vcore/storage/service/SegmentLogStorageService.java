@@ -0,0 +1,661 @@
+package dev.vertcode.vcore.storage.service;
+
+import dev.vertcode.vcore.scheduler.Schedulers;
+import dev.vertcode.vcore.scheduler.schedule.ScheduledTask;
+import dev.vertcode.vcore.storage.StorageObject;
+import dev.vertcode.vcore.storage.StorageService;
+import dev.vertcode.vcore.storage.annotation.StorageContext;
+import dev.vertcode.vcore.storage.metrics.Operation;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link StorageService} that appends every write to a log of segment files.
+ * <p>
+ * Instead of a file per value, all values of a collection live in a few large segment files. A save or a
+ * delete appends a record to the newest segment, and an in-memory index maps every identifier to the
+ * location of its latest record, so a read is a single positional read. Once a segment reaches the maximum
+ * segment size it's sealed and a new one is started.
+ * <p>
+ * Records that are superseded by a newer write stay in their segment until it's compacted. Compaction runs
+ * in the background and rewrites the latest records of sealed segments that are mostly dead to the end of
+ * the log. The newer segments are forced to disk before the old segment is deleted, whatever the
+ * {@link SyncMode}.
+ * <p>
+ * On startup the index is rebuilt by scanning the record headers of every segment, the values are skipped.
+ * A segment is only marked as sealed once its records were forced, so only the newest segment and segments
+ * that were sealed without a force, with {@link SyncMode#NONE}, can contain a write that was interrupted by
+ * a crash. Their checksums are verified and a torn tail is cut off.
+ * <p>
+ * Values are identified by the {@link Object#toString()} of their identifier, like the file names of
+ * {@link JSONStorageService}.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+public class SegmentLogStorageService<I, V extends StorageObject<I>> extends StorageService<I, V> {
+
+    private static final byte[] EMPTY_VALUE = new byte[0];
+
+    private final File databaseFolder;
+    private final ConcurrentMap<String, LogSegment.Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    private SyncMode syncMode = SyncMode.BATCH;
+    private long maxSegmentSize = 64L * 1024L * 1024L;
+    private double compactionThreshold = 0.5D;
+    private long compactionInterval = 5L;
+    private TimeUnit compactionIntervalUnit = TimeUnit.MINUTES;
+    private volatile LogSegment activeSegment;
+    private ScheduledTask compactionTask;
+
+    public SegmentLogStorageService(Class<V> storageObjectClass, File databaseFolder) {
+        super(storageObjectClass);
+        this.databaseFolder = databaseFolder;
+    }
+
+    public SegmentLogStorageService(Class<V> storageObjectClass, Long cacheTime, TimeUnit cacheTimeUnit, File databaseFolder) {
+        super(storageObjectClass, cacheTime, cacheTimeUnit);
+        this.databaseFolder = databaseFolder;
+    }
+
+    @Override
+    public void startup() {
+        // Get the data folder, and create it if it doesn't exist
+        File dataFolder = getDataFolder();
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+
+        // Rebuild the index from the segments
+        try {
+            recover(dataFolder.toPath());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Couldn't open the segment log in " + dataFolder + ".", ex);
+        }
+
+        scheduleCompaction();
+        startWarmup();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+
+        synchronized (this) {
+            if (this.compactionTask != null) {
+                this.compactionTask.cancel();
+                this.compactionTask = null;
+            }
+        }
+
+        // Wait for a running compaction and close the segments
+        this.compactionLock.lock();
+        this.writeLock.lock();
+        try {
+            for (LogSegment segment : this.segments.values()) {
+                try {
+                    if (this.syncMode != SyncMode.NONE) {
+                        segment.force();
+                    }
+
+                    segment.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            this.segments.clear();
+            this.index.clear();
+        } finally {
+            this.writeLock.unlock();
+            this.compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Close the segments without saving the cache or forcing anything, like a crash would. The next service
+     * opened on the folder has to recover the log.
+     */
+    void close() {
+        release();
+
+        synchronized (this) {
+            if (this.compactionTask != null) {
+                this.compactionTask.cancel();
+                this.compactionTask = null;
+            }
+        }
+
+        this.compactionLock.lock();
+        this.writeLock.lock();
+        try {
+            for (LogSegment segment : this.segments.values()) {
+                try {
+                    segment.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            this.segments.clear();
+            this.index.clear();
+        } finally {
+            this.writeLock.unlock();
+            this.compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public @Nullable V get(I identifier, boolean cache) {
+        long start = System.nanoTime();
+        try {
+            String key = getKey(identifier);
+            if (!cache) {
+                return read(key, this.index.get(key));
+            }
+
+            return getOrLoad(identifier, () -> {
+                V value = read(key, this.index.get(key));
+                if (value == null) {
+                    return null;
+                }
+
+                // Add the value to the cache
+                cacheLoaded(value);
+                return value;
+            });
+        } finally {
+            getMetrics().record(Operation.GET, start);
+        }
+    }
+
+    @Override
+    public Collection<V> getAll(boolean cache) {
+        try (Stream<V> stream = stream(cache)) {
+            return stream.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public Stream<V> stream(boolean cache) {
+        // Read the records in the order they're laid out on disk, the values are only read while the stream is consumed
+        List<Map.Entry<String, LogSegment.Location>> entries = new ArrayList<>(this.index.entrySet());
+        entries.sort(Map.Entry.comparingByValue(LogSegment.Location.DISK_ORDER));
+
+        Stream<V> stream = entries.stream()
+                .map(entry -> read(entry.getKey(), entry.getValue()))
+                .filter(Objects::nonNull);
+        if (!cache) {
+            return stream;
+        }
+
+        // Add the values to the cache while they're streamed
+        return stream.map(value -> {
+            cacheLoaded(value);
+            return value;
+        });
+    }
+
+    @Override
+    public void save(V value) {
+        long start = System.nanoTime();
+        try {
+            write(List.of(value));
+        } finally {
+            getMetrics().record(Operation.SAVE, start);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<V> values) {
+        long start = System.nanoTime();
+        try {
+            write(values);
+        } finally {
+            getMetrics().record(Operation.SAVE_ALL, start);
+        }
+    }
+
+    /**
+     * Write a batch of values.
+     *
+     * @param values The values you want to write
+     */
+    private void write(Collection<V> values) {
+        // Serialize the values before taking the lock
+        List<V> encodedValues = new ArrayList<>(values.size());
+        List<byte[]> encodedBytes = new ArrayList<>(values.size());
+        List<ByteBuffer> records = new ArrayList<>(values.size());
+        for (V value : values) {
+            try {
+                byte[] encoded = getCodec().encode(value);
+                records.add(LogSegment.encode(LogSegment.TYPE_PUT, getKey(value.getIdentifier()), encoded));
+                encodedValues.add(value);
+                encodedBytes.add(encoded);
+            } catch (Exception ex) {
+                value.markDirty();
+                ex.printStackTrace();
+            }
+        }
+
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // Append all the records, a batch is forced to disk at once
+        int appended = 0;
+        this.writeLock.lock();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                appendRecord(getKey(encodedValues.get(i).getIdentifier()), records.get(i));
+                appended++;
+            }
+
+            if (this.syncMode != SyncMode.NONE) {
+                this.activeSegment.force();
+            }
+
+            for (int i = 0; i < records.size(); i++) {
+                markSaved(encodedValues.get(i), encodedBytes.get(i));
+            }
+        } catch (Exception ex) {
+            // We don't know which records reached the disk, so write all of them again next time
+            encodedValues.forEach(StorageObject::markDirty);
+            ex.printStackTrace();
+        } finally {
+            this.writeLock.unlock();
+        }
+
+        // The appended values are visible to reads now and replace what the caches knew about their identifiers
+        if (appended > 0) {
+            onWrite(encodedValues.subList(0, appended).stream().map(StorageObject::getIdentifier).toList());
+        }
+    }
+
+    @Override
+    public void delete(V value) {
+        long start = System.nanoTime();
+        try {
+            I identifier = value.getIdentifier();
+            String key = getKey(identifier);
+
+            boolean deleted = false;
+            this.writeLock.lock();
+            try {
+                if (this.index.containsKey(key)) {
+                    // Append a tombstone, so the delete survives a restart
+                    appendRecord(key, LogSegment.encode(LogSegment.TYPE_DELETE, key, EMPTY_VALUE));
+                    if (this.syncMode != SyncMode.NONE) {
+                        this.activeSegment.force();
+                    }
+                }
+
+                deleted = true;
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            } finally {
+                this.writeLock.unlock();
+            }
+
+            // Only remove the value from the caches once the tombstone is written
+            if (deleted) {
+                removeFromCache(identifier);
+                onWrite(identifier);
+            }
+        } finally {
+            getMetrics().record(Operation.DELETE, start);
+        }
+    }
+
+    /**
+     * Compact the sealed segments that have fewer live records than the compaction threshold.
+     * <p>
+     * This runs on the compaction interval, but can be called manually. If a compaction is already running
+     * this returns immediately.
+     */
+    public void compact() {
+        // Only one compaction runs at a time
+        if (!this.compactionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            for (LogSegment segment : new ArrayList<>(this.segments.values())) {
+                // The segments are ordered, everything from the active segment on is still being written
+                if (segment == this.activeSegment) {
+                    break;
+                }
+
+                if (segment.getLiveRatio() >= this.compactionThreshold) {
+                    continue;
+                }
+
+                compactSegment(segment);
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            this.compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Set when writes are forced to disk, defaults to {@link SyncMode#BATCH}.
+     * <p>
+     * Because all writes go to the same file, {@link SyncMode#ALWAYS} and {@link SyncMode#BATCH} both force
+     * a batch of saves once after all of them are appended.
+     *
+     * @param syncMode The {@link SyncMode}
+     */
+    public void setSyncMode(SyncMode syncMode) {
+        this.syncMode = syncMode;
+    }
+
+    /**
+     * Set the size at which a segment is sealed and a new one is started, defaults to 64 MiB.
+     *
+     * @param maxSegmentSize The maximum segment size in bytes
+     */
+    public void setMaxSegmentSize(long maxSegmentSize) {
+        if (maxSegmentSize <= LogSegment.FILE_HEADER_SIZE) {
+            throw new IllegalArgumentException("The maximum segment size must be larger than the segment header.");
+        }
+
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Set the part of a sealed segment that must still be live to skip its compaction, defaults to 0.5.
+     *
+     * @param compactionThreshold The live ratio below which a segment is compacted, between 0 and 1
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (compactionThreshold < 0D || compactionThreshold > 1D) {
+            throw new IllegalArgumentException("The compaction threshold must be between 0 and 1.");
+        }
+
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Set the interval the background compaction runs on, defaults to 5 minutes.
+     *
+     * @param compactionInterval     The compaction interval
+     * @param compactionIntervalUnit The {@link TimeUnit} of the compaction interval
+     */
+    public synchronized void setCompactionInterval(long compactionInterval, TimeUnit compactionIntervalUnit) {
+        this.compactionInterval = compactionInterval;
+        this.compactionIntervalUnit = compactionIntervalUnit;
+
+        // Reschedule the compaction if the service is already running
+        if (this.compactionTask != null) {
+            this.compactionTask.cancel();
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Schedule the background compaction.
+     */
+    private synchronized void scheduleCompaction() {
+        this.compactionTask = Schedulers.BACKEND.run(this::compact, this.compactionInterval, this.compactionInterval, this.compactionIntervalUnit);
+    }
+
+    /**
+     * Open the segments and rebuild the index from their records.
+     *
+     * @param dataFolder The data folder
+     * @throws IOException If a segment couldn't be opened
+     */
+    private void recover(Path dataFolder) throws IOException {
+        List<Path> segmentFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dataFolder, LogSegment.getFileGlob())) {
+            for (Path file : files) {
+                if (LogSegment.parseId(file) < 0) {
+                    continue;
+                }
+
+                segmentFiles.add(file);
+            }
+        }
+
+        // Replay the segments in the order they were written, so the latest record of every key wins
+        segmentFiles.sort(Comparator.comparingInt(LogSegment::parseId));
+        for (int i = 0; i < segmentFiles.size(); i++) {
+            Path segmentFile = segmentFiles.get(i);
+            LogSegment segment = LogSegment.open(segmentFile, LogSegment.parseId(segmentFile));
+            this.segments.put(segment.getId(), segment);
+
+            // Sealed segments were forced before they were sealed, the others can have a torn write
+            boolean newest = i == segmentFiles.size() - 1;
+            boolean verify = newest || !segment.isSealed();
+            long validSize = segment.scan(verify, this::applyRecord);
+            if (validSize < segment.getSize()) {
+                segment.truncate(validSize);
+            }
+
+            // The older segment is verified now, so it doesn't have to be verified on the next startup
+            if (verify && !newest) {
+                segment.force();
+                segment.seal();
+            }
+        }
+
+        if (this.segments.isEmpty()) {
+            this.activeSegment = LogSegment.create(dataFolder, 1);
+            this.segments.put(this.activeSegment.getId(), this.activeSegment);
+            syncDataFolder();
+            return;
+        }
+
+        this.activeSegment = this.segments.lastEntry().getValue();
+    }
+
+    /**
+     * Copy the live records of a sealed segment to the end of the log and delete the segment.
+     *
+     * @param segment The segment you want to compact
+     * @throws IOException If the records couldn't be copied
+     */
+    private void compactSegment(LogSegment segment) throws IOException {
+        // Nothing older can hold a record a tombstone of this segment hides
+        boolean oldest = this.segments.firstKey() == segment.getId();
+
+        segment.scan(false, (key, location) -> {
+            // Take the lock per record, so saves aren't blocked for the whole compaction
+            this.writeLock.lock();
+            try {
+                if (location.type() == LogSegment.TYPE_PUT) {
+                    // Skip records that were superseded
+                    if (!location.equals(this.index.get(key))) {
+                        return;
+                    }
+                } else if (oldest || this.index.containsKey(key)) {
+                    return;
+                }
+
+                appendRecord(key, segment.readRecord(location));
+            } finally {
+                this.writeLock.unlock();
+            }
+        });
+
+        // The copies and the records that superseded the old segment must be on disk before it's removed,
+        // even if writes aren't forced otherwise
+        this.writeLock.lock();
+        try {
+            for (LogSegment newer : this.segments.tailMap(segment.getId(), false).values()) {
+                if (newer.isSealed()) {
+                    continue;
+                }
+
+                newer.force();
+                if (newer != this.activeSegment) {
+                    newer.seal();
+                }
+            }
+
+            syncDataFolder();
+            this.segments.remove(segment.getId());
+        } finally {
+            this.writeLock.unlock();
+        }
+
+        // Reads that still use the segment see it closed and look their record up again
+        segment.delete();
+    }
+
+    /**
+     * Append a record to the active segment, starting a new segment if it's full. The write lock must be held.
+     *
+     * @param key    The key of the record
+     * @param record The encoded record
+     * @throws IOException If the record couldn't be written
+     */
+    private void appendRecord(String key, ByteBuffer record) throws IOException {
+        LogSegment segment = this.activeSegment;
+        if (segment.getSize() >= this.maxSegmentSize) {
+            segment = rotate();
+        }
+
+        applyRecord(key, segment.append(record));
+    }
+
+    /**
+     * Point the index to a record and update the live bytes of the segments.
+     *
+     * @param key      The key of the record
+     * @param location The {@link LogSegment.Location} of the record
+     */
+    private void applyRecord(String key, LogSegment.Location location) {
+        LogSegment.Location previous;
+        if (location.type() == LogSegment.TYPE_PUT) {
+            previous = this.index.put(key, location);
+            location.segment().addLiveBytes(location.size());
+        } else {
+            previous = this.index.remove(key);
+        }
+
+        if (previous != null) {
+            previous.segment().addLiveBytes(-previous.size());
+        }
+    }
+
+    /**
+     * Seal the active segment and start a new one. The write lock must be held.
+     *
+     * @return The new active segment
+     * @throws IOException If the new segment couldn't be created
+     */
+    private LogSegment rotate() throws IOException {
+        LogSegment sealed = this.activeSegment;
+        if (this.syncMode != SyncMode.NONE) {
+            sealed.force();
+            sealed.seal();
+        }
+
+        LogSegment segment = LogSegment.create(getDataFolder().toPath(), sealed.getId() + 1);
+        this.segments.put(segment.getId(), segment);
+        this.activeSegment = segment;
+
+        if (this.syncMode != SyncMode.NONE) {
+            syncDataFolder();
+        }
+
+        return segment;
+    }
+
+    /**
+     * Read the value of a record.
+     *
+     * @param key      The key of the record
+     * @param location The {@link LogSegment.Location} of the record, may be null
+     * @return The value, or null if it doesn't exist or couldn't be read
+     */
+    private @Nullable V read(String key, @Nullable LogSegment.Location location) {
+        while (location != null) {
+            try {
+                return getCodec().decode(location.segment().readValue(location), this.storageObjectClass);
+            } catch (ClosedChannelException ex) {
+                // The segment was compacted away while we were reading it, look the record up again
+                LogSegment.Location current = this.index.get(key);
+                if (location.equals(current)) {
+                    return null;
+                }
+
+                location = current;
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Force the directory entries of the data folder to disk, so new segments survive a crash.
+     *
+     * @throws IOException If the data folder couldn't be opened
+     */
+    private void syncDataFolder() throws IOException {
+        try (FileChannel channel = FileChannel.open(getDataFolder().toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // Not every platform allows syncing a directory, the file itself is already on disk there
+            if (!System.getProperty("os.name", "").toLowerCase().contains("win")) {
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Get the key of an identifier in the log.
+     *
+     * @param identifier The identifier
+     * @return The key
+     */
+    private String getKey(I identifier) {
+        return String.valueOf(identifier);
+    }
+
+    /**
+     * Get the data folder of the {@link StorageService}.
+     *
+     * @return The data folder
+     */
+    private File getDataFolder() {
+        StorageContext storageContext = getStorageContext();
+        if (storageContext == null) {
+            throw new NullPointerException("StorageContext is null");
+        }
+
+        return new File(this.databaseFolder, storageContext.collectionName());
+    }
+}
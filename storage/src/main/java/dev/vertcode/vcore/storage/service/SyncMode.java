@@ -0,0 +1,23 @@
+package dev.vertcode.vcore.storage.service;
+
+/**
+ * Decides when a file based storage service forces its writes to disk.
+ */
+public enum SyncMode {
+
+    /**
+     * Writes are never forced, the operating system writes them to disk whenever it likes.
+     */
+    NONE,
+    /**
+     * Every save forces its file and the directory to disk before it returns.
+     */
+    ALWAYS,
+    /**
+     * Writes are committed as a group: a save or a whole batch of saves is made durable with a single force,
+     * instead of forcing every value. The file based services append the batch to a log or journal and force
+     * that once, the files that are rewritten in place are only forced by a later checkpoint.
+     */
+    BATCH
+
+}
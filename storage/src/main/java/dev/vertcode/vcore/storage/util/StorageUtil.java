@@ -36,6 +36,38 @@ public class StorageUtil {
         return GSON_BUILDER;
     }
 
+    /**
+     * Calculate a 64-bit FNV-1a hash of a serialized value.
+     *
+     * @param serialized The serialized value
+     * @return The hash of the serialized value
+     */
+    public static long hash(String serialized) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < serialized.length(); i++) {
+            hash ^= serialized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Calculate a 64-bit FNV-1a hash of an encoded value.
+     *
+     * @param encoded The encoded value
+     * @return The hash of the encoded value
+     */
+    public static long hash(byte[] encoded) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : encoded) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
     /**
      * Update the Gson instance.
      *
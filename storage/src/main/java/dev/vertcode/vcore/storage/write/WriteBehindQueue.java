@@ -0,0 +1,189 @@
+package dev.vertcode.vcore.storage.write;
+
+import dev.vertcode.vcore.scheduler.Schedulers;
+import dev.vertcode.vcore.scheduler.schedule.ScheduledTask;
+import dev.vertcode.vcore.storage.StorageObject;
+import dev.vertcode.vcore.storage.StorageService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A write-behind queue for a {@link StorageService}.
+ * <p>
+ * Pending writes are keyed by identifier, so writing the same value many times before the queue is flushed
+ * only writes its latest state once. The queue is flushed on an interval, or as soon as the amount of pending
+ * writes reaches the batch size. Flushes never run concurrently, so writes for the same identifier always
+ * reach the database in the order they were queued.
+ *
+ * @param <I> The identifier type
+ * @param <V> The value type
+ */
+public class WriteBehindQueue<I, V extends StorageObject<I>> {
+
+    private final StorageService<I, V> storageService;
+    private final ConcurrentMap<I, PendingWrite<V>> pendingWrites = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final int batchSize;
+    private final ScheduledTask flushTask;
+
+    public WriteBehindQueue(StorageService<I, V> storageService, long flushInterval, TimeUnit flushIntervalUnit, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1.");
+        }
+
+        this.storageService = storageService;
+        this.batchSize = batchSize;
+        this.flushTask = Schedulers.BACKEND.run(this::flush, flushInterval, flushInterval, flushIntervalUnit);
+    }
+
+    /**
+     * Queue a save of a value.
+     *
+     * @param value The value you want to save
+     * @return A {@link CompletableFuture} completed once the latest queued state of the value is written
+     */
+    public CompletableFuture<Void> save(V value) {
+        return enqueue(value, false);
+    }
+
+    /**
+     * Queue a delete of a value, this replaces a pending save of the same value.
+     *
+     * @param value The value you want to delete
+     * @return A {@link CompletableFuture} completed once the value is deleted
+     */
+    public CompletableFuture<Void> delete(V value) {
+        return enqueue(value, true);
+    }
+
+    /**
+     * Get the amount of pending writes.
+     *
+     * @return The amount of pending writes
+     */
+    public int size() {
+        return this.pendingWrites.size();
+    }
+
+    /**
+     * Write all the pending writes to the database.
+     */
+    public void flush() {
+        this.flushLock.lock();
+        try {
+            this.flushScheduled.set(false);
+
+            while (!this.pendingWrites.isEmpty()) {
+                List<PendingWrite<V>> saves = new ArrayList<>();
+                List<PendingWrite<V>> deletes = new ArrayList<>();
+
+                // Take a batch of pending writes, writes queued after this are part of the next batch
+                Iterator<I> iterator = this.pendingWrites.keySet().iterator();
+                while (iterator.hasNext() && saves.size() + deletes.size() < this.batchSize) {
+                    PendingWrite<V> pendingWrite = this.pendingWrites.remove(iterator.next());
+                    if (pendingWrite == null) {
+                        continue;
+                    }
+
+                    (pendingWrite.delete() ? deletes : saves).add(pendingWrite);
+                }
+
+                writeSaves(saves);
+                writeDeletes(deletes);
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the flush interval and write all the pending writes.
+     */
+    public void shutdown() {
+        this.flushTask.cancel();
+        flush();
+    }
+
+    /**
+     * Queue a write, coalescing it with the pending write of the same identifier.
+     *
+     * @param value  The value you want to write
+     * @param delete If the value should be deleted
+     * @return The {@link CompletableFuture} of the pending write
+     */
+    private CompletableFuture<Void> enqueue(V value, boolean delete) {
+        PendingWrite<V> pendingWrite = this.pendingWrites.compute(value.getIdentifier(), (identifier, existing) -> {
+            CompletableFuture<Void> future = existing == null ? new CompletableFuture<>() : existing.future();
+            return new PendingWrite<>(value, delete, future);
+        });
+
+        // Flush early if the batch is full
+        if (this.pendingWrites.size() >= this.batchSize && this.flushScheduled.compareAndSet(false, true)) {
+            Schedulers.BACKEND.run(this::flush);
+        }
+
+        return pendingWrite.future();
+    }
+
+    /**
+     * Write a batch of saves.
+     *
+     * @param saves The pending saves
+     */
+    private void writeSaves(List<PendingWrite<V>> saves) {
+        if (saves.isEmpty()) {
+            return;
+        }
+
+        List<V> values = new ArrayList<>(saves.size());
+        for (PendingWrite<V> save : saves) {
+            values.add(save.value());
+        }
+
+        try {
+            this.storageService.saveAll(values);
+        } catch (Exception ex) {
+            saves.forEach(save -> save.future().completeExceptionally(ex));
+            return;
+        }
+
+        saves.forEach(save -> save.future().complete(null));
+    }
+
+    /**
+     * Write a batch of deletes.
+     *
+     * @param deletes The pending deletes
+     */
+    private void writeDeletes(List<PendingWrite<V>> deletes) {
+        for (PendingWrite<V> delete : deletes) {
+            try {
+                this.storageService.delete(delete.value());
+                delete.future().complete(null);
+            } catch (Exception ex) {
+                delete.future().completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * A write waiting in the queue.
+     *
+     * @param value  The latest queued value
+     * @param delete If the value should be deleted
+     * @param future The {@link CompletableFuture} shared by all coalesced writes
+     * @param <V>    The value type
+     */
+    private record PendingWrite<V>(V value, boolean delete, CompletableFuture<Void> future) {
+    }
+
+}
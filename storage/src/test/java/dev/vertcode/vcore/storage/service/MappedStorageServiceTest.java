@@ -0,0 +1,129 @@
+package dev.vertcode.vcore.storage.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link MappedStorageService} after its index was left unclean, so it's rebuilt by scanning the
+ * data file on the next startup.
+ */
+class MappedStorageServiceTest {
+
+    @TempDir
+    Path databaseFolder;
+
+    @Test
+    void tornRecordIsDroppedWhenTheIndexIsRebuilt() throws IOException {
+        MappedStorageService<String, Profile> service = open();
+        service.save(new Profile("first", "one"));
+        service.save(new Profile("second", "two"));
+        service.save(new Profile("torn", "three"));
+        service.close();
+
+        // Damage the value of the last record, like a crash in the middle of the append
+        Path dataFile = this.databaseFolder.resolve("profiles.dat");
+        byte[] bytes = Files.readAllBytes(dataFile);
+        int keyPosition = indexOf(bytes, "torn".getBytes(StandardCharsets.UTF_8));
+        assertTrue(keyPosition > 0);
+        bytes[keyPosition + 6] ^= 0x55;
+        Files.write(dataFile, bytes);
+
+        MappedStorageService<String, Profile> recovered = open();
+        assertEquals("one", recovered.get("first", false).getName());
+        assertEquals("two", recovered.get("second", false).getName());
+        assertNull(recovered.get("torn", false));
+
+        // The next record takes the place of the dropped one
+        recovered.save(new Profile("after", "four"));
+        recovered.shutdown();
+
+        MappedStorageService<String, Profile> reopened = open();
+        assertEquals("four", reopened.get("after", false).getName());
+        assertNull(reopened.get("torn", false));
+        reopened.shutdown();
+    }
+
+    @Test
+    void grownIndexIsRebuilt() {
+        // Enough values to grow the index past its initial slots a few times
+        MappedStorageService<String, Profile> service = open();
+        for (int i = 0; i < 1500; i++) {
+            service.save(new Profile("profile-" + i, "value-" + i));
+        }
+
+        for (int i = 0; i < 1500; i += 3) {
+            service.delete(new Profile("profile-" + i, "value-" + i));
+        }
+
+        service.close();
+
+        MappedStorageService<String, Profile> reopened = open();
+        assertEquals(1000, reopened.getAll(false).size());
+        for (int i = 0; i < 1500; i++) {
+            Profile profile = reopened.get("profile-" + i, false);
+            if (i % 3 == 0) {
+                assertNull(profile);
+            } else {
+                assertEquals("value-" + i, profile.getName());
+            }
+        }
+
+        reopened.shutdown();
+    }
+
+    @Test
+    void writesAfterCompactionAreRecovered() {
+        MappedStorageService<String, Profile> service = open();
+        Profile deleted = new Profile("deleted", "old");
+        service.save(deleted);
+        for (int i = 0; i < 50; i++) {
+            service.save(new Profile("profile-" + i, "first"));
+        }
+
+        service.delete(deleted);
+        service.compact();
+
+        // These records are appended to the compacted data file
+        for (int i = 0; i < 50; i += 2) {
+            service.save(new Profile("profile-" + i, "second"));
+        }
+
+        service.close();
+
+        MappedStorageService<String, Profile> reopened = open();
+        assertNull(reopened.get("deleted", false));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i % 2 == 0 ? "second" : "first", reopened.get("profile-" + i, false).getName());
+        }
+
+        reopened.shutdown();
+    }
+
+    private MappedStorageService<String, Profile> open() {
+        MappedStorageService<String, Profile> service = new MappedStorageService<>(Profile.class, this.databaseFolder.toFile());
+        service.setAutoSave(false);
+        service.startup();
+        return service;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] search) {
+        for (int i = 0; i <= bytes.length - search.length; i++) {
+            if (Arrays.equals(bytes, i, i + search.length, search, 0, search.length)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,32 @@
+package dev.vertcode.vcore.storage.service;
+
+import dev.vertcode.vcore.storage.StorageObject;
+import dev.vertcode.vcore.storage.annotation.StorageContext;
+
+/**
+ * The value the storage service tests write, stored in the "profiles" collection.
+ */
+@StorageContext(collectionName = "profiles", identifierField = "id")
+class Profile extends StorageObject<String> {
+
+    private String id;
+    private String name;
+
+    Profile() {
+    }
+
+    Profile(String id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return this.id;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+}
@@ -0,0 +1,159 @@
+package dev.vertcode.vcore.storage.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests how the {@link SegmentLogStorageService} rebuilds its index from the segment files.
+ * <p>
+ * The segments are kept small, so a few values already spread over several of them.
+ */
+class SegmentLogStorageServiceTest {
+
+    @TempDir
+    Path databaseFolder;
+
+    @Test
+    void tornTailIsCutOffOnRecovery() throws IOException {
+        SegmentLogStorageService<String, Profile> service = open(SyncMode.BATCH);
+        service.save(new Profile("first", "one"));
+        service.save(new Profile("second", "two"));
+        service.save(new Profile("torn", "three"));
+        service.close();
+
+        // Cut the last record short, like a crash in the middle of the append
+        Path newest = getSegmentFiles().get(getSegmentFiles().size() - 1);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5L);
+        }
+
+        SegmentLogStorageService<String, Profile> recovered = open(SyncMode.BATCH);
+        assertEquals("one", recovered.get("first", false).getName());
+        assertEquals("two", recovered.get("second", false).getName());
+        assertNull(recovered.get("torn", false));
+
+        // New records are appended after the last valid record
+        recovered.save(new Profile("after", "four"));
+        recovered.shutdown();
+
+        SegmentLogStorageService<String, Profile> reopened = open(SyncMode.BATCH);
+        assertEquals("four", reopened.get("after", false).getName());
+        assertNull(reopened.get("torn", false));
+        reopened.shutdown();
+    }
+
+    @Test
+    void unforcedSealedSegmentsAreVerified() throws IOException {
+        SegmentLogStorageService<String, Profile> service = open(SyncMode.NONE);
+        for (int i = 0; i < 100; i++) {
+            service.save(new Profile("profile-" + i, "value-" + i));
+        }
+
+        service.close();
+
+        // Damage a record in the middle of a sealed segment, like a page that never reached the disk
+        Path sealed = getSegmentFiles().get(1);
+        byte[] bytes = Files.readAllBytes(sealed);
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(sealed, bytes);
+
+        SegmentLogStorageService<String, Profile> recovered = open(SyncMode.NONE);
+        int found = 0;
+        for (int i = 0; i < 100; i++) {
+            Profile profile = recovered.get("profile-" + i, false);
+            if (profile != null) {
+                assertEquals("value-" + i, profile.getName());
+                found++;
+            }
+        }
+
+        // Only the damaged segment loses records
+        assertTrue(found > 0 && found < 100);
+        recovered.shutdown();
+    }
+
+    @Test
+    void tombstoneOutlivesTheSegmentOfItsValue() throws IOException {
+        SegmentLogStorageService<String, Profile> service = open(SyncMode.NONE);
+        service.setCompactionThreshold(1D);
+
+        // The value ends up in the oldest segment, its tombstone in one of the newest
+        Profile deleted = new Profile("deleted", "old");
+        service.save(deleted);
+        for (int i = 0; i < 50; i++) {
+            service.save(new Profile("profile-" + i, "first"));
+        }
+
+        service.delete(deleted);
+        for (int i = 0; i < 50; i++) {
+            service.save(new Profile("profile-" + i, "second"));
+        }
+
+        int segmentsBefore = getSegmentFiles().size();
+        service.compact();
+        assertTrue(getSegmentFiles().size() < segmentsBefore);
+        service.close();
+
+        SegmentLogStorageService<String, Profile> reopened = open(SyncMode.NONE);
+        assertNull(reopened.get("deleted", false));
+        assertEquals(50, reopened.getAll(false).size());
+        reopened.shutdown();
+    }
+
+    @Test
+    void newestRecordWinsAcrossSegments() throws IOException {
+        SegmentLogStorageService<String, Profile> service = open(SyncMode.NONE);
+        for (int i = 0; i < 100; i++) {
+            service.save(new Profile("profile-" + i, "first"));
+        }
+
+        for (int i = 0; i < 100; i += 2) {
+            service.save(new Profile("profile-" + i, "second"));
+        }
+
+        service.delete(service.get("profile-1", false));
+        assertTrue(getSegmentFiles().size() > 2);
+        service.close();
+
+        SegmentLogStorageService<String, Profile> reopened = open(SyncMode.NONE);
+        assertNull(reopened.get("profile-1", false));
+        for (int i = 2; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? "second" : "first", reopened.get("profile-" + i, false).getName());
+        }
+
+        reopened.shutdown();
+    }
+
+    private SegmentLogStorageService<String, Profile> open(SyncMode syncMode) {
+        SegmentLogStorageService<String, Profile> service = new SegmentLogStorageService<>(Profile.class, this.databaseFolder.toFile());
+        service.setAutoSave(false);
+        service.setSyncMode(syncMode);
+        service.setMaxSegmentSize(2048L);
+        service.startup();
+        return service;
+    }
+
+    private List<Path> getSegmentFiles() throws IOException {
+        List<Path> segmentFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.databaseFolder.resolve("profiles"), LogSegment.getFileGlob())) {
+            files.forEach(segmentFiles::add);
+        }
+
+        segmentFiles.sort(null);
+        return segmentFiles;
+    }
+
+}